@@ -0,0 +1,47 @@
+package uk.ac.standrews.cs.cs2001.w03.common;
+
+/**
+ * Abstract base class for the checked exceptions thrown by the shop system.
+ * These exceptions are often used for control flow, e.g. when a product sells out,
+ * so filling in their stack traces can be switched off to make throwing them cheap.
+ * Stack traces are filled in by default, unless the system property
+ * {@link AbstractShopException#STACKLESS_PROPERTY} is set to true.
+ */
+public abstract class AbstractShopException extends Exception {
+
+    /**
+     * The name of the system property which, when set to true, turns stack traces off from start-up.
+     */
+    public static final String STACKLESS_PROPERTY = "w03.exceptions.stackless";
+
+    /**
+     * Whether newly created exceptions record their stack trace.
+     */
+    private static volatile boolean stackTraceEnabled = !Boolean.getBoolean(STACKLESS_PROPERTY);
+
+    /**
+     * Sets whether exceptions created from now on record their stack trace.
+     *
+     * @param enabled true to record stack traces, false to throw stackless exceptions
+     */
+    public static void setStackTraceEnabled(boolean enabled) {
+        stackTraceEnabled = enabled;
+    }
+
+    /**
+     * Returns whether exceptions created from now on record their stack trace.
+     *
+     * @return true if stack traces are recorded
+     */
+    public static boolean isStackTraceEnabled() {
+        return stackTraceEnabled;
+    }
+
+    /**
+     * Creates a new exception, which records its stack trace only if
+     * {@link AbstractShopException#isStackTraceEnabled()} is true.
+     */
+    protected AbstractShopException() {
+        super(null, null, stackTraceEnabled, stackTraceEnabled);
+    }
+}
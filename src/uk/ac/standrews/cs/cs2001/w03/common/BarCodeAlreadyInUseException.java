@@ -4,5 +4,5 @@ package uk.ac.standrews.cs.cs2001.w03.common;
  * This exception should be used to indicate when multiple products share the same barcode.
  *
  */
-public class BarCodeAlreadyInUseException extends Exception {
+public class BarCodeAlreadyInUseException extends AbstractShopException {
 }
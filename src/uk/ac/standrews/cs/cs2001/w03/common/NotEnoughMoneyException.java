@@ -7,5 +7,5 @@ package uk.ac.standrews.cs.cs2001.w03.common;
  * @author 150009974
  * @version 1.0
  */
-public class NotEnoughMoneyException extends Exception {
+public class NotEnoughMoneyException extends AbstractShopException {
 }
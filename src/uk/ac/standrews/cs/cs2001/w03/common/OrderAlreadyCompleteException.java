@@ -8,5 +8,5 @@ import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
  * @author 150009974
  * @version 1.0
  */
-public class OrderAlreadyCompleteException extends Exception {
+public class OrderAlreadyCompleteException extends AbstractShopException {
 }
@@ -4,5 +4,5 @@ package uk.ac.standrews.cs.cs2001.w03.common;
  * This exception should be used to indicate that a barcode has been presented to the system before it has been registered for use.
  *
  */
-public class ProductNotRegisteredException extends Exception {
+public class ProductNotRegisteredException extends AbstractShopException {
 }
@@ -4,5 +4,5 @@ package uk.ac.standrews.cs.cs2001.w03.common;
  * This exception should be used to indicate that a product is not available.
  *
  */
-public class StockUnavailableException extends Exception {
+public class StockUnavailableException extends AbstractShopException {
 }
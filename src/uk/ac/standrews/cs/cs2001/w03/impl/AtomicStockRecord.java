@@ -0,0 +1,447 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IStockRecord;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a record for a particular product which can be updated by many threads
+ * without locking.
+ * The stock count and number of sales are packed into a single {@link AtomicLong}, so that a purchase
+ * changes both with one compare-and-set and the two are never seen out of step.
+ * The revenue is kept in a {@link LongAdder}, so that concurrent purchases do not compete to update it.
+ * Units held by reservations are moved out of the packed stock count into {@link AtomicStockRecord#held},
+ * so a purchase without a reservation can only take the units that are not held.
+ * Moving units in and out of {@link AtomicStockRecord#held} is done under the lock of the record itself,
+ * so that retiring the record counts them exactly once, while purchases without a reservation take no lock at all.
+ */
+public class AtomicStockRecord implements IStockRecord {
+
+    /**
+     * The value of {@link AtomicStockRecord#state} once the record has been retired by its shop.
+     */
+    private static final long RETIRED = -1L;
+
+    /**
+     * The value returned by {@link AtomicStockRecord#addStockAndGetAdded(int)} when the record has been retired.
+     */
+    static final int NOT_ADDED = -1;
+
+    /**
+     * The mask selecting the number of sales from {@link AtomicStockRecord#state}.
+     */
+    private static final long SALES_MASK = 0xFFFFFFFFL;
+
+    /**
+     * The {@link IProduct} instance for which stock information is stored.
+     */
+    private final IProduct product;
+
+    /**
+     * The stock count in the upper 32 bits and the number of sales in the lower 32 bits.
+     */
+    private final AtomicLong state;
+
+    /**
+     * The price of the {@link AtomicStockRecord#product}.
+     */
+    private volatile int price;
+
+    /**
+     * The total amount earned from purchases of the {@link AtomicStockRecord#product}.
+     */
+    private final LongAdder revenue;
+
+    /**
+     * The number of units held by reservations. These are in stock, but not in the packed stock count.
+     * Only changed while holding the lock of the record.
+     */
+    private volatile int held;
+
+    /**
+     * Packs a stock count and a number of sales into a single value.
+     *
+     * @param stockCount    the stock count
+     * @param numberOfSales the number of sales
+     * @return the packed value
+     */
+    private static long pack(int stockCount, int numberOfSales) {
+        return ((long) stockCount << 32) | (numberOfSales & SALES_MASK);
+    }
+
+    /**
+     * Extracts the stock count from a packed value.
+     *
+     * @param state the packed value
+     * @return the stock count
+     */
+    private static int stockCountOf(long state) {
+        return (int) (state >>> 32);
+    }
+
+    /**
+     * Extracts the number of sales from a packed value.
+     *
+     * @param state the packed value
+     * @return the number of sales
+     */
+    private static int numberOfSalesOf(long state) {
+        return (int) (state & SALES_MASK);
+    }
+
+    /**
+     * Adds two non-negative counts, stopping at {@link Integer#MAX_VALUE}.
+     *
+     * @param value the current count
+     * @param count the amount to add
+     * @return the sum, or {@link Integer#MAX_VALUE} if it does not fit
+     */
+    private static int saturatedAdd(int value, int count) {
+        return (value > Integer.MAX_VALUE - count) ? Integer.MAX_VALUE : value + count;
+    }
+
+    /**
+     * Adds the held units to a stock count taken from {@link AtomicStockRecord#state}.
+     * The two are not read together, so the sum may briefly be more than the stock ever was,
+     * and it is stopped at {@link Integer#MAX_VALUE}.
+     *
+     * @param stockCount the units which are not held
+     * @return the units in stock, including the held ones
+     */
+    private int withHeld(int stockCount) {
+        return saturatedAdd(stockCount, held);
+    }
+
+    @Override
+    public IProduct getProduct() {
+        return product;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The units held by reservations are counted, so the result may be briefly off while one is being made.
+     */
+    @Override
+    public int getStockCount() {
+
+        long current = state.get();
+        return (current == RETIRED) ? 0 : withHeld(stockCountOf(current));
+
+    }
+
+    /**
+     * Returns the number of units in stock that are not held by reservations.
+     *
+     * @return the number of units that can be bought without a reservation
+     */
+    int getAvailableCount() {
+
+        long current = state.get();
+        return (current == RETIRED) ? 0 : stockCountOf(current);
+
+    }
+
+    @Override
+    public int getNumberOfSales() {
+
+        long current = state.get();
+        return (current == RETIRED) ? 0 : numberOfSalesOf(current);
+
+    }
+
+    @Override
+    public long getRevenue() {
+        return revenue.sum();
+    }
+
+    @Override
+    public void addStock() {
+        addStock(1);
+    }
+
+    @Override
+    public void addStock(int count) {
+        addStockAndGetAdded(count);
+    }
+
+    /**
+     * Adds stock like {@link AtomicStockRecord#addStock(int)} and reports how much was actually added.
+     *
+     * @param count the number of units to add
+     * @return the number of units added, which is less than the count if the maximum was reached,
+     * or {@link AtomicStockRecord#NOT_ADDED} if the record has been retired
+     * @throws IllegalArgumentException when the count is negative
+     */
+    int addStockAndGetAdded(int count) {
+
+        StockRecord.checkCount(count);
+
+        while (true) {
+
+            long current = state.get();
+            if (current == RETIRED) {
+                return NOT_ADDED;
+            }
+
+            //The held units count towards the maximum, so that the whole stock count never exceeds it.
+            int stockCount = stockCountOf(current);
+            int added = Math.min(count, Integer.MAX_VALUE - withHeld(stockCount));
+
+            if (state.compareAndSet(current, pack(stockCount + added, numberOfSalesOf(current)))) {
+                return added;
+            }
+
+        }
+
+    }
+
+    @Override
+    public void buyProduct() throws StockUnavailableException {
+        buyProduct(1);
+    }
+
+    @Override
+    public void buyProduct(int count) throws StockUnavailableException {
+        buyProductAndGetCost(count);
+    }
+
+    /**
+     * Buys stock like {@link AtomicStockRecord#buyProduct(int)} and reports what the purchase cost.
+     *
+     * @param count the number of units to buy
+     * @return the cost of the purchase, at the price the product had when it was bought
+     * @throws StockUnavailableException when there are fewer units in stock than requested
+     * @throws IllegalArgumentException  when the count is negative
+     */
+    long buyProductAndGetCost(int count) throws StockUnavailableException {
+
+        StockRecord.checkCount(count);
+
+        while (true) {
+
+            long current = state.get();
+            if (current == RETIRED) {
+                throw new StockUnavailableException();
+            }
+
+            int stockCount = stockCountOf(current);
+            if (stockCount < count) {
+                throw new StockUnavailableException();
+            }
+
+            int numberOfSales = saturatedAdd(numberOfSalesOf(current), count);
+
+            if (state.compareAndSet(current, pack(stockCount - count, numberOfSales))) {
+                long cost = (long) price * count;
+                revenue.add(cost);
+                return cost;
+            }
+
+        }
+
+    }
+
+    /**
+     * Undoes a purchase made with {@link AtomicStockRecord#buyProductAndGetCost(int)},
+     * returning the units to the stock and removing them from the sales and revenue.
+     *
+     * @param count the number of units that were bought
+     * @param cost  the cost of the purchase
+     * @return true if the units were returned to the stock, false if the record has been retired in the meantime
+     */
+    boolean cancelPurchase(int count, long cost) {
+
+        revenue.add(-cost);
+
+        while (true) {
+
+            long current = state.get();
+            if (current == RETIRED) {
+                return false;
+            }
+
+            int stockCount = saturatedAdd(stockCountOf(current), count);
+            int numberOfSales = Math.max(numberOfSalesOf(current) - count, 0);
+
+            if (state.compareAndSet(current, pack(stockCount, numberOfSales))) {
+                return true;
+            }
+
+        }
+
+    }
+
+    /**
+     * Moves units out of the available stock, so that they are held for a reservation.
+     *
+     * @param count the number of units to hold
+     * @throws StockUnavailableException when fewer units are available than requested, or the record has been retired
+     */
+    synchronized void hold(int count) throws StockUnavailableException {
+
+        while (true) {
+
+            long current = state.get();
+            if (current == RETIRED || stockCountOf(current) < count) {
+                throw new StockUnavailableException();
+            }
+
+            if (state.compareAndSet(current, pack(stockCountOf(current) - count, numberOfSalesOf(current)))) {
+                held += count;
+                return;
+            }
+
+        }
+
+    }
+
+    /**
+     * Gives held units back to the available stock, when their reservation expires or is released.
+     * Nothing is given back once the record has been retired.
+     *
+     * @param count the number of units to give back
+     */
+    synchronized void unhold(int count) {
+
+        while (true) {
+
+            long current = state.get();
+            if (current == RETIRED) {
+                return;
+            }
+
+            if (state.compareAndSet(current, pack(saturatedAdd(stockCountOf(current), count), numberOfSalesOf(current)))) {
+                held -= count;
+                return;
+            }
+
+        }
+
+    }
+
+    /**
+     * Buys units that are held for a reservation.
+     *
+     * @param count the number of held units to buy
+     * @return the cost of the purchase
+     * @throws StockUnavailableException when the record has been retired
+     */
+    synchronized long buyHeld(int count) throws StockUnavailableException {
+
+        while (true) {
+
+            long current = state.get();
+            if (current == RETIRED) {
+                throw new StockUnavailableException();
+            }
+
+            if (state.compareAndSet(current, pack(stockCountOf(current), saturatedAdd(numberOfSalesOf(current), count)))) {
+                held -= count;
+                long cost = (long) price * count;
+                revenue.add(cost);
+                return cost;
+            }
+
+        }
+
+    }
+
+    /**
+     * Undoes a purchase made with {@link AtomicStockRecord#buyHeld(int)}, so that the units are held again.
+     *
+     * @param count the number of units that were bought
+     * @param cost  the cost of the purchase
+     * @return true if the units are held again, false if the record has been retired in the meantime
+     */
+    synchronized boolean cancelHeldPurchase(int count, long cost) {
+
+        revenue.add(-cost);
+
+        while (true) {
+
+            long current = state.get();
+            if (current == RETIRED) {
+                return false;
+            }
+
+            int numberOfSales = Math.max(numberOfSalesOf(current) - count, 0);
+
+            if (state.compareAndSet(current, pack(stockCountOf(current), numberOfSales))) {
+                held += count;
+                return true;
+            }
+
+        }
+
+    }
+
+    /**
+     * Retires the record, after which no stock can be added or bought.
+     * Used by a shop when the product is unregistered.
+     *
+     * @return the stock count at the moment the record was retired, including held units,
+     * or {@link AtomicStockRecord#NOT_ADDED} if it had already been retired
+     */
+    synchronized int retire() {
+
+        long previous = state.getAndSet(RETIRED);
+        if (previous == RETIRED) {
+            return NOT_ADDED;
+        }
+
+        int stockCount = withHeld(stockCountOf(previous));
+        held = 0;
+        return stockCount;
+
+    }
+
+    /**
+     * Returns whether the record has been retired by its shop.
+     *
+     * @return true if {@link AtomicStockRecord#retire()} has been called
+     */
+    boolean isRetired() {
+        return state.get() == RETIRED;
+    }
+
+    @Override
+    public void setPrice(int price) {
+
+        if (price <= 0) {
+            this.price = StockRecord.DEFAULT_PRICE;
+        } else {
+            this.price = price;
+        }
+
+    }
+
+    @Override
+    public int getPrice() {
+        return price;
+    }
+
+    /**
+     * Creates a new {@link AtomicStockRecord} instance to store information about the passed {@link IProduct}.
+     * If null is passed, a product with random field values is created, as in {@link StockRecord}.
+     *
+     * @param product the product about which information will be kept
+     */
+    AtomicStockRecord(IProduct product) {
+
+        if (product != null) {
+            this.product = product;
+        } else {
+            this.product = Factory.getInstance().makeProduct(null, null);
+        }
+
+        this.state = new AtomicLong(pack(0, 0));
+        this.price = StockRecord.DEFAULT_PRICE;
+        this.revenue = new LongAdder();
+        this.held = 0;
+
+    }
+
+}
@@ -0,0 +1,321 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class maps bar codes to values.
+ * Bar codes which can be packed by {@link PackedBarCode} are kept as primitive longs in an open addressing table,
+ * with no entry objects and no key strings, so looking one up hashes and compares longs.
+ * Any other bar code is kept in a {@link HashMap}, as before.
+ * Values may not be null.
+ * The probing and removal are also used by {@link OffHeapShop}, whose table is a buffer rather than arrays,
+ * through {@link BarCodeIndex.Slots}.
+ *
+ * @param <V> the type of the values
+ */
+final class BarCodeIndex<V> {
+
+    /**
+     * The slots of an open addressing table of long keys, searched by linear probing.
+     * The number of slots must be a power of two.
+     */
+    interface Slots {
+
+        /**
+         * Returns whether a slot is empty.
+         *
+         * @param slot the slot
+         * @return true if the slot holds no key
+         */
+        boolean isEmpty(int slot);
+
+        /**
+         * Gets the key in a slot which is not empty.
+         *
+         * @param slot the slot
+         * @return the key
+         */
+        long keyAt(int slot);
+
+        /**
+         * Moves the key in a slot, and everything kept with it, to an empty slot, leaving the first slot empty.
+         *
+         * @param from the slot to move
+         * @param to   the empty slot to move it to
+         */
+        void move(int from, int to);
+    }
+
+    /**
+     * The number of slots the table starts with. Must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The slots of {@link BarCodeIndex#keys} and {@link BarCodeIndex#values}, for the probing and removal.
+     */
+    private final Slots slots = new Slots() {
+
+        @Override
+        public boolean isEmpty(int slot) {
+            return values[slot] == null;
+        }
+
+        @Override
+        public long keyAt(int slot) {
+            return keys[slot];
+        }
+
+        @Override
+        public void move(int from, int to) {
+            keys[to] = keys[from];
+            values[to] = values[from];
+            values[from] = null;
+        }
+    };
+
+    /**
+     * The packed bar code in each slot of the table.
+     */
+    private long[] keys;
+
+    /**
+     * The value in each slot of the table, or null for an empty slot.
+     */
+    private Object[] values;
+
+    /**
+     * The number of packed bar codes in the table.
+     */
+    private int packedSize;
+
+    /**
+     * The values of bar codes which cannot be packed.
+     */
+    private final HashMap<String, V> others;
+
+    /**
+     * Finds the slot at which the search for a key starts.
+     *
+     * @param key  the key
+     * @param mask the number of slots less one
+     * @return the first slot to look at
+     */
+    static int homeOf(long key, int mask) {
+
+        //Spread the bits, as neighbouring bar codes differ only in their last digits.
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+
+    }
+
+    /**
+     * Finds the slot holding a key, or the empty slot where it would go.
+     *
+     * @param key   the key
+     * @param mask  the number of slots less one
+     * @param slots the slots to search
+     * @return the slot
+     */
+    static int probe(long key, int mask, Slots slots) {
+
+        int slot = homeOf(key, mask);
+
+        while (!slots.isEmpty(slot) && slots.keyAt(slot) != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+
+    }
+
+    /**
+     * Fills the hole left by emptying a slot, so that the keys after it can still be found.
+     *
+     * @param hole  the slot which has just been emptied
+     * @param mask  the number of slots less one
+     * @param slots the slots of the table
+     */
+    static void closeHole(int hole, int mask, Slots slots) {
+
+        //Move later keys of the same run back into the hole, if their search would otherwise pass over it.
+        for (int slot = (hole + 1) & mask; !slots.isEmpty(slot); slot = (slot + 1) & mask) {
+
+            int home = homeOf(slots.keyAt(slot), mask);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots.move(slot, hole);
+                hole = slot;
+            }
+
+        }
+
+    }
+
+    /**
+     * Finds the slot holding a packed bar code, or the empty slot where it would go.
+     *
+     * @param packed the packed bar code
+     * @return the slot
+     */
+    private int slotOf(long packed) {
+        return probe(packed, keys.length - 1, slots);
+    }
+
+    /**
+     * Makes the table twice as large, once it is half full.
+     */
+    private void grow() {
+
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+    }
+
+    /**
+     * Looks up the value of a bar code.
+     *
+     * @param barCode the bar code, which may be null
+     * @return the value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    V get(String barCode) {
+
+        long packed = PackedBarCode.pack(barCode);
+        if (packed == PackedBarCode.NOT_PACKED) {
+            return others.get(barCode);
+        }
+
+        return (V) values[slotOf(packed)];
+
+    }
+
+    /**
+     * Returns whether a bar code has a value.
+     *
+     * @param barCode the bar code, which may be null
+     * @return true if the bar code has a value
+     */
+    boolean containsKey(String barCode) {
+        return get(barCode) != null;
+    }
+
+    /**
+     * Sets the value of a bar code.
+     *
+     * @param barCode the bar code
+     * @param value   the value
+     * @return the previous value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    V put(String barCode, V value) {
+
+        if (value == null) {
+            throw new NullPointerException("Argument value should not be null!");
+        }
+
+        long packed = PackedBarCode.pack(barCode);
+        if (packed == PackedBarCode.NOT_PACKED) {
+            return others.put(barCode, value);
+        }
+
+        if ((packedSize + 1) * 2 > keys.length) {
+            grow();
+        }
+
+        int slot = slotOf(packed);
+        V previous = (V) values[slot];
+
+        keys[slot] = packed;
+        values[slot] = value;
+        if (previous == null) {
+            packedSize++;
+        }
+
+        return previous;
+
+    }
+
+    /**
+     * Removes the value of a bar code.
+     *
+     * @param barCode the bar code, which may be null
+     * @return the removed value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    V remove(String barCode) {
+
+        long packed = PackedBarCode.pack(barCode);
+        if (packed == PackedBarCode.NOT_PACKED) {
+            return others.remove(barCode);
+        }
+
+        int hole = slotOf(packed);
+        V removed = (V) values[hole];
+        if (removed == null) {
+            return null;
+        }
+
+        values[hole] = null;
+        packedSize--;
+        closeHole(hole, keys.length - 1, slots);
+
+        return removed;
+
+    }
+
+    /**
+     * Gets the number of bar codes with a value.
+     *
+     * @return the number of bar codes
+     */
+    int size() {
+        return packedSize + others.size();
+    }
+
+    /**
+     * Gets every value, in no particular order.
+     *
+     * @return a copy of the values
+     */
+    @SuppressWarnings("unchecked")
+    List<V> values() {
+
+        List<V> all = new ArrayList<>(size());
+
+        for (Object value : values) {
+            if (value != null) {
+                all.add((V) value);
+            }
+        }
+        all.addAll(others.values());
+
+        return all;
+
+    }
+
+    /**
+     * Creates a new, empty {@link BarCodeIndex}.
+     */
+    BarCodeIndex() {
+
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        packedSize = 0;
+        others = new HashMap<>();
+
+    }
+
+}
@@ -0,0 +1,531 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractFactoryClient;
+import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a shop for very large numbers of products.
+ * Rather than a stock record object per product, the shop keeps one array per field, such as stock counts or prices,
+ * and each product has a dense id which is its index into every array.
+ * Going through all products, as when finding the most popular ones, is then a pass along a few primitive arrays.
+ * Products keep their id until they are unregistered, which leaves an empty slot behind.
+ * When the arrays are full and at least half of their slots are empty, the products are moved down to fill the gaps,
+ * keeping their order, instead of making the arrays larger.
+ * As in {@link Shop}, reservations are kept by a {@link ReservedStock}, here keyed by product id,
+ * and the reservations are given the new ids when products are moved.
+ */
+public class ColumnarShop extends AbstractFactoryClient implements IShop {
+
+    /**
+     * The reservations passed when buying without any.
+     */
+    private static final long[] NO_RESERVATIONS = new long[0];
+
+    /**
+     * The number of slots the arrays start with.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The id of each product in the shop, keyed by its bar code.
+     */
+    private BarCodeIndex<Integer> ids;
+
+    /**
+     * The product with each id, or null for an empty slot.
+     */
+    private IProduct[] products;
+
+    /**
+     * The stock count of each product, including the units held by reservations.
+     */
+    private int[] stockCounts;
+
+    /**
+     * The number of units of each product that are held by reservations.
+     */
+    private int[] heldCounts;
+
+    /**
+     * The price of each product.
+     */
+    private int[] prices;
+
+    /**
+     * The number of sales of each product.
+     */
+    private int[] sales;
+
+    /**
+     * The revenue from sales of each product.
+     */
+    private long[] revenues;
+
+    /**
+     * The number of slots in use, including empty ones. Ids from this number on have never been given out.
+     */
+    private int size;
+
+    /**
+     * The total shop revenue from all sales.
+     */
+    private long revenue;
+
+    /**
+     * The total count of stock over all products in the shop.
+     * Each product may hold up to {@link Integer#MAX_VALUE} units, so the total is kept as a long.
+     */
+    private long totalStockCount;
+
+    /**
+     * The total number of units sold, over all products.
+     */
+    private long totalNumberOfSales;
+
+    /**
+     * The reservations of stock that have not yet expired, keyed by the id of the reserved product,
+     * or by {@link IShop#NOT_REGISTERED} once the product has been unregistered and the empty slots filled.
+     */
+    private ReservedStock<Integer, Integer> reservations;
+
+    /**
+     * The stock counts, as seen by the reservations, which are kept with the id of their product.
+     */
+    private final class ColumnStock implements ReservedStock.Stock<Integer, Integer> {
+
+        @Override
+        public Integer find(String barCode) {
+            return ids.get(barCode);
+        }
+
+        @Override
+        public Integer keyOf(Integer id) {
+            return id;
+        }
+
+        @Override
+        public Integer productOf(Integer id) {
+            return (id == NOT_REGISTERED || products[id] == null) ? null : id;
+        }
+
+        @Override
+        public int availableOf(Integer id) {
+            return stockCounts[id] - heldCounts[id];
+        }
+
+        @Override
+        public void addHeld(Integer id, int count) {
+            heldCounts[id] += count;
+        }
+
+        @Override
+        public void sell(Integer id, int count) {
+            ColumnarShop.this.sell(id, count);
+        }
+    }
+
+    /**
+     * Looks up the id of the product with the specified bar code.
+     *
+     * @param barCode the bar code of the product
+     * @return the id of that product, or {@link IShop#NOT_REGISTERED} if the product does not exist in the shop
+     */
+    private int findId(String barCode) {
+
+        Integer id = ids.get(barCode);
+        return (id == null) ? NOT_REGISTERED : id;
+
+    }
+
+    /**
+     * Looks up the id of the product with the specified bar code.
+     *
+     * @param barCode the bar code of the product
+     * @return the id of that product
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     */
+    private int getId(String barCode) throws ProductNotRegisteredException {
+
+        int id = findId(barCode);
+        if (id == NOT_REGISTERED) {
+            throw new ProductNotRegisteredException();
+        }
+
+        return id;
+
+    }
+
+    /**
+     * Makes room for one more product in the arrays, which are full.
+     * The empty slots are filled if at least half of the slots are empty, otherwise the arrays are made twice as large.
+     */
+    private void makeRoom() {
+
+        if ((size - ids.size()) * 2 >= size) {
+            compact();
+        }
+        else {
+            int capacity = products.length * 2;
+            products = Arrays.copyOf(products, capacity);
+            stockCounts = Arrays.copyOf(stockCounts, capacity);
+            heldCounts = Arrays.copyOf(heldCounts, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            sales = Arrays.copyOf(sales, capacity);
+            revenues = Arrays.copyOf(revenues, capacity);
+        }
+
+    }
+
+    /**
+     * Moves the products down to fill the empty slots, keeping them in the order they were registered,
+     * and gives them and their reservations their new ids.
+     */
+    private void compact() {
+
+        int[] newIds = new int[size];
+        int next = 0;
+
+        for (int id = 0; id < size; id++) {
+
+            if (products[id] == null) {
+                newIds[id] = NOT_REGISTERED;
+                continue;
+            }
+
+            newIds[id] = next;
+
+            products[next] = products[id];
+            stockCounts[next] = stockCounts[id];
+            heldCounts[next] = heldCounts[id];
+            prices[next] = prices[id];
+            sales[next] = sales[id];
+            revenues[next] = revenues[id];
+            ids.put(products[next].getBarCode(), next);
+            next++;
+
+        }
+
+        Arrays.fill(products, next, size, null);
+        size = next;
+
+        //The reservations of unregistered products no longer have a slot, and must not take one over.
+        reservations.rekey(id -> (id == NOT_REGISTERED) ? NOT_REGISTERED : newIds[id]);
+
+    }
+
+    @Override
+    public void registerProduct(IProduct product) throws BarCodeAlreadyInUseException {
+
+        if (product == null) {
+            product = getFactory().makeProduct(null, null);
+        }
+
+        String barCode = product.getBarCode();
+        if (ids.containsKey(barCode)) {
+            throw new BarCodeAlreadyInUseException();
+        }
+
+        if (size == products.length) {
+            makeRoom();
+        }
+
+        int id = size++;
+        products[id] = product;
+        stockCounts[id] = 0;
+        heldCounts[id] = 0;
+        prices[id] = StockRecord.DEFAULT_PRICE;
+        sales[id] = 0;
+        revenues[id] = 0;
+        ids.put(barCode, id);
+
+    }
+
+    @Override
+    public void unregisterProduct(IProduct product) throws ProductNotRegisteredException {
+
+        if (product == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        Integer id = ids.remove(product.getBarCode());
+        if (id == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        totalStockCount -= stockCounts[id];
+
+        products[id] = null;
+        stockCounts[id] = 0;
+        heldCounts[id] = 0;
+        sales[id] = 0;
+        revenues[id] = 0;
+
+    }
+
+    @Override
+    public void addStock(String barCode) throws ProductNotRegisteredException {
+        addStock(barCode, 1);
+    }
+
+    @Override
+    public void addStock(String barCode, int count) throws ProductNotRegisteredException {
+
+        int id = getId(barCode);
+
+        StockRecord.checkCount(count);
+
+        //The stock count stops at the maximum, as with a stock record.
+        int added = Math.min(count, Integer.MAX_VALUE - stockCounts[id]);
+        stockCounts[id] += added;
+        totalStockCount += added;
+
+    }
+
+    @Override
+    public void buyProduct(String barCode) throws StockUnavailableException, ProductNotRegisteredException {
+        buyProduct(barCode, 1);
+    }
+
+    @Override
+    public void buyProduct(String barCode, int count) throws StockUnavailableException, ProductNotRegisteredException {
+        reservations.buy(getId(barCode), count);
+    }
+
+    /**
+     * Sells units of a product and adds the sale to the shop totals.
+     * The caller must have checked that enough units are available.
+     *
+     * @param id    the id of the product to sell
+     * @param count the number of units to sell
+     */
+    private void sell(int id, int count) {
+
+        long cost = (long) prices[id] * count;
+
+        stockCounts[id] -= count;
+        sales[id] = (sales[id] > Integer.MAX_VALUE - count) ? Integer.MAX_VALUE : sales[id] + count;
+        revenues[id] += cost;
+
+        revenue += cost;
+        totalStockCount -= count;
+        totalNumberOfSales += count;
+
+    }
+
+    @Override
+    public void buyProducts(Map<String, Integer> quantities) throws StockUnavailableException, ProductNotRegisteredException {
+        buyProducts(quantities, NO_RESERVATIONS);
+    }
+
+    @Override
+    public void buyProducts(Map<String, Integer> quantities, long[] reservationIds) throws StockUnavailableException, ProductNotRegisteredException {
+        reservations.buy(quantities, reservationIds);
+    }
+
+    @Override
+    public long reserve(String barCode, int count, long replacing) throws StockUnavailableException, ProductNotRegisteredException {
+        return reservations.reserve(getId(barCode), count, replacing);
+    }
+
+    @Override
+    public void releaseReservation(long reservation) {
+        reservations.release(reservation);
+    }
+
+    @Override
+    public void setReservationTimeout(long milliseconds) {
+        reservations.setTimeout(milliseconds);
+    }
+
+    @Override
+    public int getNumberOfProducts() {
+        return ids.size();
+    }
+
+    @Override
+    public int getTotalStockCount() {
+        return Math.toIntExact(getTotalStockCountAsLong());
+    }
+
+    @Override
+    public long getTotalStockCountAsLong() {
+
+        assert totalStockCount == countTotalStock() : "Total stock count is out of sync with the stock counts!";
+        return totalStockCount;
+
+    }
+
+    /**
+     * Calculates the total stock count by going through the stock counts of all products.
+     * This is only used to verify {@link ColumnarShop#totalStockCount}.
+     * Empty slots have a stock count of zero, so they do not need to be skipped.
+     *
+     * @return the sum of the stock counts
+     */
+    private long countTotalStock() {
+
+        long totalStock = 0;
+
+        for (int id = 0; id < size; id++) {
+            totalStock += stockCounts[id];
+        }
+        return totalStock;
+
+    }
+
+    @Override
+    public int getStockCount(String barCode) throws ProductNotRegisteredException {
+        return stockCounts[getId(barCode)];
+    }
+
+    @Override
+    public int findStockCount(String barCode) {
+
+        int id = findId(barCode);
+        return (id == NOT_REGISTERED) ? NOT_REGISTERED : stockCounts[id];
+
+    }
+
+    @Override
+    public int getAvailableCount(String barCode) throws ProductNotRegisteredException {
+
+        return reservations.availableOf(getId(barCode));
+
+    }
+
+    @Override
+    public int findAvailableCount(String barCode) {
+
+        int id = findId(barCode);
+        return (id == NOT_REGISTERED) ? NOT_REGISTERED : reservations.availableOf(id);
+
+    }
+
+    @Override
+    public int getNumberOfSales(String barCode) throws ProductNotRegisteredException {
+        return sales[getId(barCode)];
+    }
+
+    @Override
+    public int findNumberOfSales(String barCode) {
+
+        int id = findId(barCode);
+        return (id == NOT_REGISTERED) ? NOT_REGISTERED : sales[id];
+
+    }
+
+    @Override
+    public long getTotalNumberOfSales() {
+        return totalNumberOfSales;
+    }
+
+    @Override
+    public IProduct getMostPopular() throws ProductNotRegisteredException {
+
+        //Products with the same number of sales are ranked by when they were registered, which is the order of their ids.
+        int popular = NOT_REGISTERED;
+        for (int id = 0; id < size; id++) {
+            if (products[id] != null && (popular == NOT_REGISTERED || sales[id] > sales[popular])) {
+                popular = id;
+            }
+        }
+
+        if (popular == NOT_REGISTERED) {
+            throw new ProductNotRegisteredException();
+        }
+
+        return products[popular];
+    }
+
+    @Override
+    public List<IProduct> getTopSelling(int count) {
+
+        StockRecord.checkCount(count);
+
+        //Products with the same number of sales are ranked by when they were registered, which is the order of their ids.
+        List<IProduct> topSelling = new ArrayList<>();
+        for (int id : SalesRanking.selectTop(size, id -> products[id] != null,
+                (a, b) -> (sales[a] != sales[b]) ? Integer.compare(sales[a], sales[b]) : Integer.compare(b, a), count)) {
+            topSelling.add(products[id]);
+        }
+
+        return topSelling;
+
+    }
+
+    @Override
+    public IProduct getProduct(String barCode) throws ProductNotRegisteredException {
+        return products[getId(barCode)];
+    }
+
+    @Override
+    public IProduct findProduct(String barCode) {
+
+        int id = findId(barCode);
+        return (id == NOT_REGISTERED) ? null : products[id];
+
+    }
+
+    @Override
+    public void setPriceOf(String barCode, int price) throws ProductNotRegisteredException {
+        prices[getId(barCode)] = (price <= 0) ? StockRecord.DEFAULT_PRICE : price;
+    }
+
+    @Override
+    public int getPriceOf(String barCode) throws ProductNotRegisteredException {
+        return prices[getId(barCode)];
+    }
+
+    @Override
+    public int findPriceOf(String barCode) {
+
+        int id = findId(barCode);
+        return (id == NOT_REGISTERED) ? NOT_REGISTERED : prices[id];
+
+    }
+
+    @Override
+    public int getRevenue() {
+        return Math.toIntExact(revenue);
+    }
+
+    @Override
+    public long getRevenueAsLong() {
+        return revenue;
+    }
+
+    @Override
+    public long getRevenueOf(String barCode) throws ProductNotRegisteredException {
+        return revenues[getId(barCode)];
+    }
+
+    /**
+     * Creates a new {@link ColumnarShop} instance with no products.
+     */
+    ColumnarShop() {
+
+        ids = new BarCodeIndex<>();
+        products = new IProduct[INITIAL_CAPACITY];
+        stockCounts = new int[INITIAL_CAPACITY];
+        heldCounts = new int[INITIAL_CAPACITY];
+        prices = new int[INITIAL_CAPACITY];
+        sales = new int[INITIAL_CAPACITY];
+        revenues = new long[INITIAL_CAPACITY];
+        size = 0;
+        revenue = 0;
+        totalStockCount = 0;
+        totalNumberOfSales = 0;
+        reservations = new ReservedStock<>(new ColumnStock());
+
+    }
+
+}
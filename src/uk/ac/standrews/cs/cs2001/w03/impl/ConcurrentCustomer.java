@@ -0,0 +1,504 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractShopException;
+import uk.ac.standrews.cs.cs2001.w03.common.NotEnoughMoneyException;
+import uk.ac.standrews.cs.cs2001.w03.common.OrderAlreadyCompleteException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.ICustomer;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrderBatch;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents a customer whose orders can be completed from several threads at once.
+ * The money is debited with a compare-and-set before an order is completed, so two threads can never
+ * both spend the same money, and it is refunded if the order then cannot be completed.
+ * An order is claimed by the thread completing it, so that it is never bought twice;
+ * another thread trying to complete it meanwhile is told that it is already complete.
+ * The orders are indexed by shop and by whether they are complete, in concurrent collections,
+ * so the views returned for them can be read while other threads carry on.
+ * Completed orders can be archived to a file, as with {@link Customer}.
+ */
+public class ConcurrentCustomer implements ICustomer {
+
+    /**
+     * Container for the orders made by the customer.
+     */
+    private final List<IOrder> orders;
+
+    /**
+     * The orders which some thread is currently completing.
+     */
+    private final Set<IOrder> completing;
+
+    /**
+     * The orders made to each shop, in the order they were created.
+     */
+    private final ConcurrentHashMap<IShop, List<IOrder>> ordersByShop;
+
+    /**
+     * The orders which are not complete, keyed by their index in {@link ConcurrentCustomer#orders}.
+     */
+    private final ConcurrentSkipListMap<Integer, IOrder> incompleteOrders;
+
+    /**
+     * The orders which are complete, keyed by their index in {@link ConcurrentCustomer#orders}.
+     */
+    private final ConcurrentSkipListMap<Integer, IOrder> completedOrders;
+
+    /**
+     * The number of orders which are complete, as counting the entries of a skip list takes a full scan.
+     */
+    private final AtomicInteger numberOfCompletedOrders;
+
+    /**
+     * The current amount of money the customer has.
+     */
+    private final AtomicLong money;
+
+    /**
+     * Where completed orders are archived, or null if they are kept in memory.
+     * Orders are only archived while holding the lock on {@link ConcurrentCustomer#completedOrders},
+     * so that an order completed while archiving is switched on is archived exactly once.
+     */
+    private volatile OrderArchive archive;
+
+    /**
+     * The error which last kept a completed order from being archived, or null if there was none.
+     */
+    private volatile IOException archiveFailure;
+
+    @Override
+    public void setMoney(int money) {
+        setMoney((long) money);
+    }
+
+    @Override
+    public void setMoney(long money) {
+        this.money.set((money < 0) ? Customer.DEFAULT_MONEY : money);
+    }
+
+    @Override
+    public int getMoney() {
+        return Math.toIntExact(money.get());
+    }
+
+    @Override
+    public long getMoneyAsLong() {
+        return money.get();
+    }
+
+    @Override
+    public int getTotalNumberOfOrders() {
+        return orders.size();
+    }
+
+    @Override
+    public int getNumberOfCompletedOrders() {
+        return numberOfCompletedOrders.get();
+    }
+
+    @Override
+    public int getNumberOfIncompleteOrders() {
+        return orders.size() - numberOfCompletedOrders.get();
+    }
+
+    @Override
+    public IOrder createOrder(IShop shop) {
+
+        //Checked before the order is indexed, so that a rejected shop leaves no entry behind.
+        if (shop == null) {
+            throw new NullPointerException("Argument shop of type IShop should not be null!");
+        }
+
+        //The index of the order must match its position in the list, so orders are created one at a time.
+        synchronized (orders) {
+
+            List<IOrder> fromShop = ordersByShop.computeIfAbsent(shop, key -> new CopyOnWriteArrayList<>());
+            int index = orders.size();
+            int position = fromShop.size();
+            IOrder order = new Order(shop, completed -> orderCompleted(index, position));
+
+            orders.add(order);
+            fromShop.add(order);
+            incompleteOrders.put(index, order);
+
+            return order;
+
+        }
+
+    }
+
+    /**
+     * Called by an {@link Order} made by this customer when it is completed,
+     * whether through this customer or directly.
+     *
+     * @param index    the index of the order that has been completed
+     * @param position the position of the order among the orders made to its shop
+     */
+    private void orderCompleted(int index, int position) {
+
+        completedOrders.put(index, incompleteOrders.remove(index));
+        numberOfCompletedOrders.incrementAndGet();
+
+        if (archive != null) {
+            synchronized (completedOrders) {
+                try {
+                    archive(index, position);
+                }
+                catch (IOException e) {
+                    //The order has already been bought, so it is kept in memory, and the error is kept for the caller.
+                    archiveFailure = e;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Archives a completed order, and replaces it with its stand-in everywhere the customer keeps it.
+     * Must be called while holding the lock on {@link ConcurrentCustomer#completedOrders}.
+     *
+     * @param index    the index of the order
+     * @param position the position of the order among the orders made to its shop
+     * @throws IOException when the order cannot be written to the archive
+     */
+    private void archive(int index, int position) throws IOException {
+
+        IOrder order = completedOrders.get(index);
+        if (archive == null || !(order instanceof Order)) {
+            //Archiving has been stopped since, or the order was already archived when it was switched on.
+            return;
+        }
+
+        replace(index, position, archive.archive((Order) order));
+
+    }
+
+    /**
+     * Replaces a completed order everywhere the customer keeps it.
+     * Must be called while holding the lock on {@link ConcurrentCustomer#completedOrders}.
+     *
+     * @param index       the index of the order
+     * @param position    the position of the order among the orders made to its shop
+     * @param replacement the order to put in its place
+     */
+    private void replace(int index, int position, IOrder replacement) {
+
+        IOrder order = completedOrders.get(index);
+
+        orders.set(index, replacement);
+        ordersByShop.get(order.getShop()).set(position, replacement);
+        completedOrders.put(index, replacement);
+
+    }
+
+    /**
+     * Moves every completed order to another archive, or back into memory, and closes the archive they were in.
+     * The orders are only replaced once all of them have been moved, so if one cannot be moved,
+     * they are all left where they were and the other archive is closed.
+     * Must be called while holding the lock on {@link ConcurrentCustomer#completedOrders}.
+     *
+     * @param next the archive to move the orders to, or null to keep them in memory
+     * @throws IOException when an order cannot be read back or written to the other archive
+     */
+    private void moveCompletedOrders(OrderArchive next) throws IOException {
+
+        Map<Integer, IOrder> moved = new LinkedHashMap<>();
+
+        try {
+            for (Map.Entry<Integer, IOrder> completed : completedOrders.entrySet()) {
+                IOrder order = completed.getValue();
+                Order whole = (order instanceof Order) ? (Order) order : archive.readBack(order);
+                moved.put(completed.getKey(), (next == null) ? whole : next.archive(whole));
+            }
+        }
+        catch (IOException e) {
+            if (next != null) {
+                next.close();
+            }
+            throw e;
+        }
+
+        for (Map.Entry<Integer, IOrder> replacement : moved.entrySet()) {
+            IOrder order = completedOrders.get(replacement.getKey());
+            replace(replacement.getKey(), ordersByShop.get(order.getShop()).indexOf(order), replacement.getValue());
+        }
+
+        OrderArchive previous = archive;
+        archive = next;
+        archiveFailure = null;
+
+        if (previous != null) {
+            previous.close();
+        }
+
+    }
+
+    @Override
+    public void archiveCompletedOrders(File file, int cacheSize) throws IOException {
+
+        synchronized (completedOrders) {
+
+            //Opening the same file again would discard the orders archived in it.
+            if (archive != null && archive.writesTo(file)) {
+                throw new IllegalStateException("Completed orders are already being archived to this file!");
+            }
+
+            moveCompletedOrders(new OrderArchive(file, cacheSize));
+
+        }
+
+    }
+
+    @Override
+    public void stopArchivingCompletedOrders() throws IOException {
+
+        synchronized (completedOrders) {
+            if (archive != null) {
+                moveCompletedOrders(null);
+            }
+        }
+
+    }
+
+    @Override
+    public IOException getArchiveFailure() {
+        return archiveFailure;
+    }
+
+    @Override
+    public IOrder getOrder(int index) throws IndexOutOfBoundsException {
+        return orders.get(index);
+    }
+
+    @Override
+    public List<IOrder> getOrdersFrom(IShop shop) {
+
+        List<IOrder> fromShop = ordersByShop.get(shop);
+        return (fromShop == null) ? Collections.emptyList() : Collections.unmodifiableList(fromShop);
+
+    }
+
+    @Override
+    public Collection<IOrder> getIncompleteOrders() {
+        return Collections.unmodifiableCollection(incompleteOrders.values());
+    }
+
+    @Override
+    public Collection<IOrder> getCompletedOrders() {
+        return Collections.unmodifiableCollection(completedOrders.values());
+    }
+
+    /**
+     * Takes money from the customer, unless there is not enough.
+     *
+     * @param amount the amount to take
+     * @throws NotEnoughMoneyException when the customer has less money than the amount
+     */
+    private void debit(long amount) throws NotEnoughMoneyException {
+
+        while (true) {
+
+            long current = money.get();
+            if (current < amount) {
+                throw new NotEnoughMoneyException();
+            }
+
+            if (money.compareAndSet(current, current - amount)) {
+                return;
+            }
+
+        }
+
+    }
+
+    @Override
+    public void completeOrder(int index) throws StockUnavailableException, ProductNotRegisteredException,
+            IndexOutOfBoundsException, OrderAlreadyCompleteException, NotEnoughMoneyException {
+
+        IOrder order = orders.get(index);
+
+        if (!completing.add(order)) {
+            throw new OrderAlreadyCompleteException();
+        }
+
+        try {
+
+            if (order.isComplete()) {
+                throw new OrderAlreadyCompleteException();
+            }
+
+            long cost = order.getTotalOrderCostAsLong();
+            debit(cost);
+
+            try {
+                order.complete();
+            }
+            catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException | RuntimeException e) {
+                money.addAndGet(cost);
+                throw e;
+            }
+
+        }
+        finally {
+            completing.remove(order);
+        }
+
+    }
+
+    @Override
+    public Map<IOrder, AbstractShopException> completeOrders(int... indices) throws IndexOutOfBoundsException {
+
+        //Look every order up first, so that a bad index fails before anything is completed.
+        List<IOrder> selected = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            selected.add(orders.get(index));
+        }
+
+        return completeTogether(selected);
+
+    }
+
+    @Override
+    public Map<IOrder, AbstractShopException> completeAllIncompleteOrders() {
+
+        return completeTogether(new ArrayList<>(incompleteOrders.values()));
+
+    }
+
+    /**
+     * Completes orders together through an {@link IOrderBatch}.
+     * The cost of all affordable orders is debited with a single compare-and-set,
+     * and the cost of the ones which then fail is refunded with a single addition.
+     *
+     * @param selected the orders to complete, in the order in which they are paid for
+     * @return the reason each failed order could not be completed, keyed by the order, in the order given
+     */
+    private Map<IOrder, AbstractShopException> completeTogether(List<IOrder> selected) {
+
+        Map<IOrder, AbstractShopException> failures = new IdentityHashMap<>();
+        Map<IOrder, Long> costs = new IdentityHashMap<>();
+        List<IOrder> claimed = new ArrayList<>();
+
+        try {
+
+            for (IOrder order : selected) {
+
+                //An order selected twice is only paid for once.
+                if (costs.containsKey(order) || failures.containsKey(order)) {
+                    continue;
+                }
+
+                if (!completing.add(order)) {
+                    failures.put(order, new OrderAlreadyCompleteException());
+                    continue;
+                }
+                claimed.add(order);
+
+                if (order.isComplete()) {
+                    failures.put(order, new OrderAlreadyCompleteException());
+                }
+                else {
+                    costs.put(order, order.getTotalOrderCostAsLong());
+                }
+
+            }
+
+            //Choose the orders the money covers and take it in one step, choosing again if the money changed meanwhile.
+            Set<IOrder> affordable = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            while (true) {
+
+                long current = money.get();
+                long budget = current;
+                affordable.clear();
+
+                for (IOrder order : claimed) {
+                    Long cost = costs.get(order);
+                    if (cost != null && cost <= budget) {
+                        budget -= cost;
+                        affordable.add(order);
+                    }
+                }
+
+                if (money.compareAndSet(current, budget)) {
+                    break;
+                }
+
+            }
+
+            IOrderBatch batch = Factory.getInstance().makeOrderBatch();
+            for (IOrder order : claimed) {
+                if (affordable.contains(order)) {
+                    batch.addOrder(order);
+                }
+                else if (costs.containsKey(order)) {
+                    failures.put(order, new NotEnoughMoneyException());
+                }
+            }
+
+            failures.putAll(batch.complete());
+
+            long refund = 0;
+            for (IOrder order : affordable) {
+                if (failures.containsKey(order)) {
+                    refund += costs.get(order);
+                }
+            }
+            if (refund > 0) {
+                money.addAndGet(refund);
+            }
+
+        }
+        finally {
+            completing.removeAll(claimed);
+        }
+
+        Map<IOrder, AbstractShopException> report = new LinkedHashMap<>();
+        for (IOrder order : selected) {
+            AbstractShopException failure = failures.get(order);
+            if (failure != null) {
+                report.put(order, failure);
+            }
+        }
+
+        return report;
+
+    }
+
+    /**
+     * Creates a new {@link ConcurrentCustomer} with no orders and the default amount of money.
+     */
+    ConcurrentCustomer() {
+
+        orders = Collections.synchronizedList(new ArrayList<>());
+        completing = ConcurrentHashMap.newKeySet();
+        ordersByShop = new ConcurrentHashMap<>();
+        incompleteOrders = new ConcurrentSkipListMap<>();
+        completedOrders = new ConcurrentSkipListMap<>();
+        numberOfCompletedOrders = new AtomicInteger(0);
+        money = new AtomicLong(Customer.DEFAULT_MONEY);
+        archive = null;
+        archiveFailure = null;
+
+    }
+
+}
@@ -0,0 +1,744 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractFactoryClient;
+import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IStockRecord;
+import uk.ac.standrews.cs.cs2001.w03.impl.ReservationWheel.Reservation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a shop which can be safely shared between threads.
+ * Stock is kept in {@link AtomicStockRecord}-s, which are updated without locking,
+ * so products can be stocked and sold in parallel, even when many threads sell the same product.
+ * The shop-wide totals are kept in {@link LongAdder}-s, which spread updates over several cells,
+ * so that recording a sale does not make every thread write to the same memory location.
+ * Unlike {@link Shop}, no popularity ranking is kept, as updating it would serialise all sales.
+ * The units held by reservations are taken and given back on the records themselves.
+ * The lock of the {@link ReservationWheel} is only held to look up, add and remove reservation identifiers,
+ * and purchases without a reservation only take it when they are refused, to check whether expired reservations
+ * free enough stock.
+ */
+public class ConcurrentShop extends AbstractFactoryClient implements IShop {
+
+    /**
+     * Pairs a product with the number of sales it had when it was looked at.
+     * Used to rank products while sales carry on.
+     */
+    private static final class SalesSnapshot {
+
+        /**
+         * The product that was looked at.
+         */
+        private final IProduct product;
+
+        /**
+         * The number of sales of the {@link SalesSnapshot#product}.
+         */
+        private final int sales;
+
+        private SalesSnapshot(IProduct product, int sales) {
+            this.product = product;
+            this.sales = sales;
+        }
+    }
+
+    /**
+     * All stock records in the shop, keyed by the bar code of their product.
+     * A record is retired when its product is unregistered, so that late updates to it are rejected.
+     */
+    private ConcurrentHashMap<String, AtomicStockRecord> records;
+
+    /**
+     * The total shop revenue from all sales.
+     */
+    private LongAdder revenue;
+
+    /**
+     * The total count of stock over all products in the shop.
+     */
+    private LongAdder totalStockCount;
+
+    /**
+     * The total number of units sold, over all products.
+     */
+    private LongAdder totalNumberOfSales;
+
+    /**
+     * The reservations of stock that have not yet expired, keyed by the record of the reserved product.
+     * The thread that removes a reservation from the wheel, or finds it expired, gives back the units it held.
+     */
+    private final ReservationWheel<AtomicStockRecord> reservations;
+
+    /**
+     * Looks up the stock record of the product with the specified bar code.
+     *
+     * @param barCode the bar code of the product
+     * @return the stock record of that product, or null if the product does not exist in the shop
+     */
+    private AtomicStockRecord findRecord(String barCode) {
+        return (barCode == null) ? null : records.get(barCode);
+    }
+
+    /**
+     * Looks up the stock record of the product with the specified bar code.
+     *
+     * @param barCode the bar code of the product
+     * @return the stock record of that product
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     */
+    private AtomicStockRecord getRecord(String barCode) throws ProductNotRegisteredException {
+
+        AtomicStockRecord record = findRecord(barCode);
+        if (record == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        return record;
+
+    }
+
+    /**
+     * Removes the reservations whose time has run out, making their units available again.
+     *
+     * @return true if any reservation expired
+     */
+    private boolean expireReservations() {
+
+        List<Reservation<AtomicStockRecord>> expired = new ArrayList<>();
+
+        synchronized (reservations) {
+            reservations.advance(expired::add);
+        }
+
+        //The units are given back outside the lock, so that other threads can use the wheel meanwhile.
+        expired.forEach(ConcurrentShop::unhold);
+        return !expired.isEmpty();
+
+    }
+
+    /**
+     * Removes a reservation from the wheel, after which the caller is responsible for the units it holds.
+     *
+     * @param id the identifier of the reservation
+     * @return the reservation, or null if it has expired or been removed
+     */
+    private Reservation<AtomicStockRecord> takeReservation(long id) {
+
+        synchronized (reservations) {
+            return reservations.remove(id);
+        }
+
+    }
+
+    /**
+     * Gives back the units held by a reservation which has expired or been released.
+     *
+     * @param reservation the reservation
+     */
+    private static void unhold(Reservation<AtomicStockRecord> reservation) {
+        reservation.key.unhold(reservation.count);
+    }
+
+    @Override
+    public void registerProduct(IProduct product) throws BarCodeAlreadyInUseException {
+
+        //Made directly, as the shop relies on the package-private operations of this class, which a factory may not return.
+        AtomicStockRecord record = new AtomicStockRecord(product);
+
+        if (records.putIfAbsent(record.getProduct().getBarCode(), record) != null) {
+            throw new BarCodeAlreadyInUseException();
+        }
+
+    }
+
+    @Override
+    public void unregisterProduct(IProduct product) throws ProductNotRegisteredException {
+
+        if (product == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        AtomicStockRecord record = records.remove(product.getBarCode());
+        if (record == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        //Only the thread that removed the record from the map can retire it.
+        totalStockCount.add(-record.retire());
+
+    }
+
+    @Override
+    public void addStock(String barCode) throws ProductNotRegisteredException {
+        addStock(barCode, 1);
+    }
+
+    @Override
+    public void addStock(String barCode, int count) throws ProductNotRegisteredException {
+
+        //The record may not take all of the stock, if it reaches the maximum count.
+        int added = getRecord(barCode).addStockAndGetAdded(count);
+        if (added == AtomicStockRecord.NOT_ADDED) {
+            throw new ProductNotRegisteredException();
+        }
+
+        totalStockCount.add(added);
+
+    }
+
+    @Override
+    public void buyProduct(String barCode) throws StockUnavailableException, ProductNotRegisteredException {
+        buyProduct(barCode, 1);
+    }
+
+    @Override
+    public void buyProduct(String barCode, int count) throws StockUnavailableException, ProductNotRegisteredException {
+
+        AtomicStockRecord record = getRecord(barCode);
+
+        try {
+            buy(record, count);
+        }
+        catch (StockUnavailableException e) {
+            //Expired reservations may still be holding the units.
+            if (!expireReservations()) {
+                throw e;
+            }
+            buy(record, count);
+        }
+
+    }
+
+    /**
+     * Buys units from a stock record and adds the purchase to the shop totals.
+     *
+     * @param record the record of the product to buy
+     * @param count  the number of units to buy
+     * @return the cost of the purchase
+     * @throws StockUnavailableException     if fewer units than requested are currently in stock
+     * @throws ProductNotRegisteredException if the product has been unregistered
+     */
+    private long buy(AtomicStockRecord record, int count) throws StockUnavailableException, ProductNotRegisteredException {
+
+        long cost;
+
+        try {
+            cost = record.buyProductAndGetCost(count);
+        }
+        catch (StockUnavailableException e) {
+            if (record.isRetired()) {
+                throw new ProductNotRegisteredException();
+            }
+            throw e;
+        }
+
+        revenue.add(cost);
+        totalStockCount.add(-count);
+        totalNumberOfSales.add(count);
+
+        return cost;
+
+    }
+
+    /**
+     * Buys units held for a reservation and adds the purchase to the shop totals.
+     *
+     * @param record the record of the product to buy
+     * @param count  the number of held units to buy
+     * @return the cost of the purchase
+     * @throws ProductNotRegisteredException if the product has been unregistered
+     */
+    private long buyHeld(AtomicStockRecord record, int count) throws ProductNotRegisteredException {
+
+        long cost;
+
+        try {
+            cost = record.buyHeld(count);
+        }
+        catch (StockUnavailableException e) {
+            throw new ProductNotRegisteredException();
+        }
+
+        revenue.add(cost);
+        totalStockCount.add(-count);
+        totalNumberOfSales.add(count);
+
+        return cost;
+
+    }
+
+    /**
+     * Undoes a purchase made with {@link ConcurrentShop#buy(AtomicStockRecord, int)}.
+     *
+     * @param record the record of the product that was bought
+     * @param count  the number of units that were bought
+     * @param cost   the cost of the purchase
+     */
+    private void cancel(AtomicStockRecord record, int count, long cost) {
+
+        //If the product has been unregistered since, its stock has already left the total.
+        if (record.cancelPurchase(count, cost)) {
+            totalStockCount.add(count);
+        }
+
+        revenue.add(-cost);
+        totalNumberOfSales.add(-count);
+
+    }
+
+    /**
+     * Undoes a purchase made with {@link ConcurrentShop#buyHeld(AtomicStockRecord, int)}, so that the units are held again.
+     *
+     * @param record the record of the product that was bought
+     * @param count  the number of units that were bought
+     * @param cost   the cost of the purchase
+     */
+    private void cancelHeld(AtomicStockRecord record, int count, long cost) {
+
+        //If the product has been unregistered since, its stock has already left the total.
+        if (record.cancelHeldPurchase(count, cost)) {
+            totalStockCount.add(count);
+        }
+
+        revenue.add(-cost);
+        totalNumberOfSales.add(-count);
+
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each line takes its units from the stock as soon as it is reached, without any locking.
+     * If a later line fails, the units taken by the earlier lines are given back.
+     * Other threads may see the stock of the earlier lines drop for that short time.
+     */
+    @Override
+    public void buyProducts(Map<String, Integer> quantities) throws StockUnavailableException, ProductNotRegisteredException {
+
+        try {
+            buyLines(quantities, Collections.emptyMap());
+        }
+        catch (StockUnavailableException e) {
+            //Expired reservations may still be holding the units.
+            if (!expireReservations()) {
+                throw e;
+            }
+            buyLines(quantities, Collections.emptyMap());
+        }
+
+    }
+
+    /**
+     * {@inheritDoc}
+     * The reservations are taken out of the wheel before the purchase, so that they cannot expire half way through,
+     * and are put back with their identifiers if it fails. The lines are bought on the records without any lock.
+     */
+    @Override
+    public void buyProducts(Map<String, Integer> quantities, long[] reservationIds) throws StockUnavailableException, ProductNotRegisteredException {
+
+        expireReservations();
+
+        List<Reservation<AtomicStockRecord>> own = new ArrayList<>();
+        synchronized (reservations) {
+            for (long id : reservationIds) {
+                Reservation<AtomicStockRecord> reservation = reservations.remove(id);
+                if (reservation != null) {
+                    own.add(reservation);
+                }
+            }
+        }
+
+        HashMap<AtomicStockRecord, Integer> ownCounts = new HashMap<>();
+        for (Reservation<AtomicStockRecord> reservation : own) {
+            ownCounts.merge(reservation.key, reservation.count, Integer::sum);
+        }
+
+        try {
+            buyLines(quantities, ownCounts);
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | RuntimeException e) {
+            //The units are still held, so the reservations can have them back.
+            synchronized (reservations) {
+                own.forEach(reservations::restore);
+            }
+            throw e;
+        }
+
+        //The reservations are used up, and the units they held that were not bought become available.
+        for (Map.Entry<AtomicStockRecord, Integer> left : ownCounts.entrySet()) {
+            if (left.getValue() > 0) {
+                left.getKey().unhold(left.getValue());
+            }
+        }
+
+    }
+
+    /**
+     * Buys every line of a purchase, or none of them.
+     * Units held for the purchase are bought first, and the rest are taken from the available stock.
+     * If a line fails, the lines already bought are undone.
+     *
+     * @param quantities the number of units to buy, keyed by the bar code of the product
+     * @param ownCounts  the number of units held for the purchase, for each record with any,
+     *                   which is reduced by the units bought; the reservations holding them must have been taken out of the wheel
+     * @throws StockUnavailableException     if fewer units of a product than requested are available
+     * @throws ProductNotRegisteredException if a product does not exist in the shop
+     */
+    private void buyLines(Map<String, Integer> quantities, Map<AtomicStockRecord, Integer> ownCounts)
+            throws StockUnavailableException, ProductNotRegisteredException {
+
+        int numberOfLines = quantities.size();
+        AtomicStockRecord[] boughtRecords = new AtomicStockRecord[numberOfLines];
+        int[] boughtCounts = new int[numberOfLines];
+        long[] boughtCosts = new long[numberOfLines];
+        int[] heldCounts = new int[numberOfLines];
+        long[] heldCosts = new long[numberOfLines];
+        int bought = 0;
+
+        try {
+
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+
+                AtomicStockRecord record = getRecord(line.getKey());
+                int count = line.getValue();
+                StockRecord.checkCount(count);
+
+                int fromHeld = Math.min(ownCounts.getOrDefault(record, 0), count);
+                long heldCost = (fromHeld > 0) ? buyHeld(record, fromHeld) : 0;
+
+                try {
+                    boughtCosts[bought] = buy(record, count - fromHeld);
+                }
+                catch (StockUnavailableException | ProductNotRegisteredException | RuntimeException e) {
+                    if (fromHeld > 0) {
+                        cancelHeld(record, fromHeld, heldCost);
+                    }
+                    throw e;
+                }
+
+                if (fromHeld > 0) {
+                    ownCounts.put(record, ownCounts.get(record) - fromHeld);
+                }
+
+                boughtRecords[bought] = record;
+                boughtCounts[bought] = count - fromHeld;
+                heldCounts[bought] = fromHeld;
+                heldCosts[bought] = heldCost;
+                bought++;
+
+            }
+
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | RuntimeException e) {
+
+            for (int i = bought - 1; i >= 0; i--) {
+                cancel(boughtRecords[i], boughtCounts[i], boughtCosts[i]);
+                if (heldCounts[i] > 0) {
+                    cancelHeld(boughtRecords[i], heldCounts[i], heldCosts[i]);
+                }
+            }
+            throw e;
+
+        }
+
+    }
+
+    @Override
+    public long reserve(String barCode, int count, long replacing) throws StockUnavailableException, ProductNotRegisteredException {
+
+        AtomicStockRecord record = getRecord(barCode);
+        StockRecord.checkCount(count);
+
+        expireReservations();
+
+        Reservation<AtomicStockRecord> previous;
+        synchronized (reservations) {
+            previous = reservations.get(replacing);
+        }
+
+        //The units of the replaced reservation can be kept, if it is for the same product.
+        int kept = (previous != null && previous.key == record) ? Math.min(previous.count, count) : 0;
+        hold(record, count - kept);
+
+        if (previous != null) {
+            if (takeReservation(replacing) == previous) {
+                previous.key.unhold(previous.count - kept);
+            }
+            else {
+                //The replaced reservation expired or was released meanwhile, and its units were given back.
+                try {
+                    hold(record, kept);
+                }
+                catch (StockUnavailableException | ProductNotRegisteredException e) {
+                    record.unhold(count - kept);
+                    throw e;
+                }
+            }
+        }
+
+        if (count == 0) {
+            return NO_RESERVATION;
+        }
+
+        synchronized (reservations) {
+            return reservations.add(record, count).id;
+        }
+
+    }
+
+    /**
+     * Holds units of a product for a reservation.
+     *
+     * @param record the record of the product
+     * @param count  the number of units to hold
+     * @throws StockUnavailableException     if fewer units than requested are available
+     * @throws ProductNotRegisteredException if the product has been unregistered
+     */
+    private static void hold(AtomicStockRecord record, int count) throws StockUnavailableException, ProductNotRegisteredException {
+
+        if (count == 0) {
+            return;
+        }
+
+        try {
+            record.hold(count);
+        }
+        catch (StockUnavailableException e) {
+            if (record.isRetired()) {
+                throw new ProductNotRegisteredException();
+            }
+            throw e;
+        }
+
+    }
+
+    @Override
+    public void releaseReservation(long reservation) {
+
+        Reservation<AtomicStockRecord> released = takeReservation(reservation);
+        if (released != null) {
+            unhold(released);
+        }
+
+    }
+
+    @Override
+    public void setReservationTimeout(long milliseconds) {
+
+        synchronized (reservations) {
+            reservations.setTimeout(milliseconds);
+        }
+
+    }
+
+    @Override
+    public int getNumberOfProducts() {
+        return records.size();
+    }
+
+    @Override
+    public int getTotalStockCount() {
+        return Math.toIntExact(getTotalStockCountAsLong());
+    }
+
+    @Override
+    public long getTotalStockCountAsLong() {
+        return totalStockCount.sum();
+    }
+
+    @Override
+    public int getStockCount(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getStockCount();
+    }
+
+    @Override
+    public int findStockCount(String barCode) {
+
+        AtomicStockRecord record = findRecord(barCode);
+        return (record == null) ? NOT_REGISTERED : record.getStockCount();
+
+    }
+
+    @Override
+    public int getAvailableCount(String barCode) throws ProductNotRegisteredException {
+
+        AtomicStockRecord record = getRecord(barCode);
+
+        expireReservations();
+        return record.getAvailableCount();
+
+    }
+
+    @Override
+    public int findAvailableCount(String barCode) {
+
+        AtomicStockRecord record = findRecord(barCode);
+        if (record == null) {
+            return NOT_REGISTERED;
+        }
+
+        expireReservations();
+        return record.getAvailableCount();
+
+    }
+
+    @Override
+    public int getNumberOfSales(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getNumberOfSales();
+    }
+
+    @Override
+    public int findNumberOfSales(String barCode) {
+
+        AtomicStockRecord record = findRecord(barCode);
+        return (record == null) ? NOT_REGISTERED : record.getNumberOfSales();
+
+    }
+
+    @Override
+    public long getTotalNumberOfSales() {
+        return totalNumberOfSales.sum();
+    }
+
+    /**
+     * Takes a snapshot of the number of sales of every product in the shop.
+     *
+     * @return the snapshots, in no particular order
+     */
+    private List<SalesSnapshot> takeSalesSnapshots() {
+
+        List<SalesSnapshot> snapshots = new LinkedList<>();
+
+        for (IStockRecord record : records.values()) {
+            snapshots.add(new SalesSnapshot(record.getProduct(), record.getNumberOfSales()));
+        }
+
+        return snapshots;
+
+    }
+
+    @Override
+    public IProduct getMostPopular() throws ProductNotRegisteredException {
+
+        SalesSnapshot popular = null;
+
+        for (SalesSnapshot snapshot : takeSalesSnapshots()) {
+            if (popular == null || popular.sales < snapshot.sales) {
+                popular = snapshot;
+            }
+        }
+
+        if (popular == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        return popular.product;
+    }
+
+    @Override
+    public List<IProduct> getTopSelling(int count) {
+
+        StockRecord.checkCount(count);
+
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+
+        //Keep the best selling products seen so far, with the worst of them at the head.
+        PriorityQueue<SalesSnapshot> best = new PriorityQueue<>(count,
+                Comparator.comparingInt((SalesSnapshot snapshot) -> snapshot.sales));
+
+        for (SalesSnapshot snapshot : takeSalesSnapshots()) {
+            if (best.size() < count) {
+                best.add(snapshot);
+            }
+            else if (best.peek().sales < snapshot.sales) {
+                best.poll();
+                best.add(snapshot);
+            }
+        }
+
+        List<IProduct> products = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            products.add(best.poll().product);
+        }
+
+        //The queue gives the products in increasing order of sales.
+        Collections.reverse(products);
+        return products;
+
+    }
+
+    @Override
+    public IProduct getProduct(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getProduct();
+    }
+
+    @Override
+    public IProduct findProduct(String barCode) {
+
+        AtomicStockRecord record = findRecord(barCode);
+        return (record == null) ? null : record.getProduct();
+
+    }
+
+    @Override
+    public void setPriceOf(String barCode, int price) throws ProductNotRegisteredException {
+        getRecord(barCode).setPrice(price);
+    }
+
+    @Override
+    public int getPriceOf(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getPrice();
+    }
+
+    @Override
+    public int findPriceOf(String barCode) {
+
+        AtomicStockRecord record = findRecord(barCode);
+        return (record == null) ? NOT_REGISTERED : record.getPrice();
+
+    }
+
+    @Override
+    public int getRevenue() {
+        return Math.toIntExact(revenue.sum());
+    }
+
+    @Override
+    public long getRevenueAsLong() {
+        return revenue.sum();
+    }
+
+    @Override
+    public long getRevenueOf(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getRevenue();
+    }
+
+    /**
+     * Creates a new {@link ConcurrentShop} instance with no products.
+     */
+    ConcurrentShop() {
+
+        records = new ConcurrentHashMap<>();
+        revenue = new LongAdder();
+        totalStockCount = new LongAdder();
+        totalNumberOfSales = new LongAdder();
+        reservations = new ReservationWheel<>();
+
+    }
+
+}
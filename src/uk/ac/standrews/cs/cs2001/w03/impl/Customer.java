@@ -1,17 +1,33 @@
 package uk.ac.standrews.cs.cs2001.w03.impl;
 
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractShopException;
 import uk.ac.standrews.cs.cs2001.w03.common.NotEnoughMoneyException;
 import uk.ac.standrews.cs.cs2001.w03.common.OrderAlreadyCompleteException;
 import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
 import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.ICustomer;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrderBatch;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * This class represents a customer who can place orders to different shops.
+ * Besides the list of all orders, the orders are indexed by shop and by whether they are complete,
+ * so that either group can be found without going through every order.
+ * Completed orders can be archived to a file, in which case the customer only keeps small stand-ins for them,
+ * which read the orders back from the file when used.
  *
  * @author 150009974
  * @version 1.0
@@ -21,7 +37,7 @@ public class Customer implements ICustomer {
     /**
      * The default amount of money each customer starts with.
      * This amount is also assigned when an invalid amount is passed to
-     * {@link Customer#setMoney(int)}.
+     * {@link Customer#setMoney(long)}.
      */
     public static final int DEFAULT_MONEY = 100;
 
@@ -30,13 +46,43 @@ public class Customer implements ICustomer {
      */
     private ArrayList<IOrder> orders;
 
+    /**
+     * The orders made to each shop, in the order they were created.
+     */
+    private IdentityHashMap<IShop, List<IOrder>> ordersByShop;
+
+    /**
+     * The orders which are not complete, keyed by their index in {@link Customer#orders}.
+     */
+    private TreeMap<Integer, IOrder> incompleteOrders;
+
+    /**
+     * The orders which are complete, keyed by their index in {@link Customer#orders}.
+     */
+    private TreeMap<Integer, IOrder> completedOrders;
+
     /**
      * The current amount of money the customer has.
      */
-    private int money;
+    private long money;
+
+    /**
+     * Where completed orders are archived, or null if they are kept in memory.
+     */
+    private OrderArchive archive;
+
+    /**
+     * The error which last kept a completed order from being archived, or null if there was none.
+     */
+    private IOException archiveFailure;
 
     @Override
     public void setMoney(int money) {
+        setMoney((long) money);
+    }
+
+    @Override
+    public void setMoney(long money) {
 
         if (money < 0) {
             this.money = DEFAULT_MONEY;
@@ -49,6 +95,11 @@ public class Customer implements ICustomer {
 
     @Override
     public int getMoney() {
+        return Math.toIntExact(money);
+    }
+
+    @Override
+    public long getMoneyAsLong() {
         return money;
     }
 
@@ -59,42 +110,151 @@ public class Customer implements ICustomer {
 
     @Override
     public int getNumberOfCompletedOrders() {
+        return completedOrders.size();
+    }
+
+    @Override
+    public int getNumberOfIncompleteOrders() {
+        return incompleteOrders.size();
+    }
+
+    @Override
+    public IOrder createOrder(IShop shop) {
+
+        //Checked before the order is indexed, so that a rejected shop leaves no entry behind.
+        if (shop == null) {
+            throw new NullPointerException("Argument shop of type IShop should not be null!");
+        }
 
-        int completedOrders = 0;
+        List<IOrder> fromShop = ordersByShop.computeIfAbsent(shop, key -> new ArrayList<>());
+        int index = orders.size();
+        int position = fromShop.size();
+        IOrder order = new Order(shop, completed -> orderCompleted(index, position));
 
-        for (IOrder order : orders) {
-            if (order.isComplete()) {
-                completedOrders++;
+        orders.add(order);
+        fromShop.add(order);
+        incompleteOrders.put(index, order);
+
+        return order;
+
+    }
+
+    /**
+     * Called by an {@link Order} made by this customer when it is completed,
+     * whether through {@link Customer#completeOrder(int)} or directly.
+     *
+     * @param index    the index of the order that has been completed
+     * @param position the position of the order among the orders made to its shop
+     */
+    private void orderCompleted(int index, int position) {
+
+        completedOrders.put(index, incompleteOrders.remove(index));
+
+        if (archive != null) {
+            try {
+                archive(index, position);
+            }
+            catch (IOException e) {
+                //The order has already been bought, so it is kept in memory, and the error is kept for the caller.
+                archiveFailure = e;
             }
         }
 
-        return completedOrders;
+    }
 
+    /**
+     * Archives a completed order, and replaces it with its stand-in everywhere the customer keeps it.
+     *
+     * @param index    the index of the order
+     * @param position the position of the order among the orders made to its shop
+     * @throws IOException when the order cannot be written to the archive
+     */
+    private void archive(int index, int position) throws IOException {
+        replace(index, position, archive.archive((Order) orders.get(index)));
     }
 
-    @Override
-    public int getNumberOfIncompleteOrders() {
+    /**
+     * Replaces a completed order everywhere the customer keeps it.
+     *
+     * @param index       the index of the order
+     * @param position    the position of the order among the orders made to its shop
+     * @param replacement the order to put in its place
+     */
+    private void replace(int index, int position, IOrder replacement) {
+
+        IOrder order = orders.get(index);
 
-        int incompleteOrders = 0;
+        orders.set(index, replacement);
+        ordersByShop.get(order.getShop()).set(position, replacement);
+        completedOrders.put(index, replacement);
 
-        for (IOrder order : orders) {
-            if (!order.isComplete()) {
-                incompleteOrders++;
+    }
+
+    /**
+     * Moves every completed order to another archive, or back into memory, and closes the archive they were in.
+     * The orders are only replaced once all of them have been moved, so if one cannot be moved,
+     * they are all left where they were and the other archive is closed.
+     *
+     * @param next the archive to move the orders to, or null to keep them in memory
+     * @throws IOException when an order cannot be read back or written to the other archive
+     */
+    private void moveCompletedOrders(OrderArchive next) throws IOException {
+
+        Map<Integer, IOrder> moved = new LinkedHashMap<>();
+
+        try {
+            for (Map.Entry<Integer, IOrder> completed : completedOrders.entrySet()) {
+                IOrder order = completed.getValue();
+                Order whole = (order instanceof Order) ? (Order) order : archive.readBack(order);
+                moved.put(completed.getKey(), (next == null) ? whole : next.archive(whole));
+            }
+        }
+        catch (IOException e) {
+            if (next != null) {
+                next.close();
             }
+            throw e;
         }
 
-        return incompleteOrders;
+        for (Map.Entry<Integer, IOrder> replacement : moved.entrySet()) {
+            IOrder order = orders.get(replacement.getKey());
+            replace(replacement.getKey(), ordersByShop.get(order.getShop()).indexOf(order), replacement.getValue());
+        }
+
+        OrderArchive previous = archive;
+        archive = next;
+        archiveFailure = null;
+
+        if (previous != null) {
+            previous.close();
+        }
 
     }
 
     @Override
-    public IOrder createOrder(IShop shop) {
+    public void archiveCompletedOrders(File file, int cacheSize) throws IOException {
 
-        IOrder order = new Order(shop);
-        orders.add(order);
+        //Opening the same file again would discard the orders archived in it.
+        if (archive != null && archive.writesTo(file)) {
+            throw new IllegalStateException("Completed orders are already being archived to this file!");
+        }
 
-        return order;
+        moveCompletedOrders(new OrderArchive(file, cacheSize));
+
+    }
+
+    @Override
+    public void stopArchivingCompletedOrders() throws IOException {
+
+        if (archive != null) {
+            moveCompletedOrders(null);
+        }
+
+    }
 
+    @Override
+    public IOException getArchiveFailure() {
+        return archiveFailure;
     }
 
     @Override
@@ -102,25 +262,131 @@ public class Customer implements ICustomer {
         return orders.get(index);
     }
 
+    @Override
+    public List<IOrder> getOrdersFrom(IShop shop) {
+
+        List<IOrder> fromShop = ordersByShop.get(shop);
+        return (fromShop == null) ? Collections.emptyList() : Collections.unmodifiableList(fromShop);
+
+    }
+
+    @Override
+    public Collection<IOrder> getIncompleteOrders() {
+        return Collections.unmodifiableCollection(incompleteOrders.values());
+    }
+
+    @Override
+    public Collection<IOrder> getCompletedOrders() {
+        return Collections.unmodifiableCollection(completedOrders.values());
+    }
+
     @Override
     public void completeOrder(int index) throws StockUnavailableException, ProductNotRegisteredException,
             IndexOutOfBoundsException, OrderAlreadyCompleteException, NotEnoughMoneyException {
 
         IOrder order = orders.get(index);
+        long cost = order.getTotalOrderCostAsLong();
 
-        if (money < order.getTotalOrderCost()) {
+        if (money < cost) {
             throw new NotEnoughMoneyException();
         }
 
-        money -= order.getTotalOrderCost();
+        //Only charge the customer once the order has actually been completed.
         order.complete();
+        money -= cost;
+
+    }
+
+    @Override
+    public Map<IOrder, AbstractShopException> completeOrders(int... indices) throws IndexOutOfBoundsException {
+
+        //Look every order up first, so that a bad index fails before anything is completed.
+        List<IOrder> selected = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            selected.add(orders.get(index));
+        }
+
+        return completeTogether(selected);
+
+    }
+
+    @Override
+    public Map<IOrder, AbstractShopException> completeAllIncompleteOrders() {
+
+        return completeTogether(new ArrayList<>(incompleteOrders.values()));
+
+    }
+
+    /**
+     * Completes orders together through an {@link IOrderBatch}, paying for all of them with a single reduction of money.
+     *
+     * @param selected the orders to complete, in the order in which they are paid for
+     * @return the reason each failed order could not be completed, keyed by the order, in the order given
+     */
+    private Map<IOrder, AbstractShopException> completeTogether(List<IOrder> selected) {
+
+        Map<IOrder, AbstractShopException> failures = new IdentityHashMap<>();
+        Map<IOrder, Long> costs = new IdentityHashMap<>();
+        Set<IOrder> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        IOrderBatch batch = Factory.getInstance().makeOrderBatch();
+        long budget = money;
+
+        for (IOrder order : selected) {
+
+            //An order selected twice is only paid for once.
+            if (!seen.add(order)) {
+                continue;
+            }
+
+            if (order.isComplete()) {
+                failures.put(order, new OrderAlreadyCompleteException());
+                continue;
+            }
+
+            long cost = order.getTotalOrderCostAsLong();
+            if (budget < cost) {
+                failures.put(order, new NotEnoughMoneyException());
+                continue;
+            }
+
+            budget -= cost;
+            costs.put(order, cost);
+            batch.addOrder(order);
+
+        }
+
+        failures.putAll(batch.complete());
+
+        //Only charge for the orders which were actually completed.
+        long charged = 0;
+        for (Map.Entry<IOrder, Long> paid : costs.entrySet()) {
+            if (!failures.containsKey(paid.getKey())) {
+                charged += paid.getValue();
+            }
+        }
+        money -= charged;
+
+        Map<IOrder, AbstractShopException> report = new LinkedHashMap<>();
+        for (IOrder order : selected) {
+            AbstractShopException failure = failures.get(order);
+            if (failure != null) {
+                report.put(order, failure);
+            }
+        }
+
+        return report;
 
     }
 
     Customer() {
 
         orders = new ArrayList<>();
+        ordersByShop = new IdentityHashMap<>();
+        incompleteOrders = new TreeMap<>();
+        completedOrders = new TreeMap<>();
         money = DEFAULT_MONEY;
+        archive = null;
+        archiveFailure = null;
 
     }
 }
@@ -1,6 +1,7 @@
 package uk.ac.standrews.cs.cs2001.w03.impl;
 
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IFactory;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrderBatch;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IStockRecord;
@@ -42,14 +43,49 @@ public final class Factory implements IFactory {
         return new StockRecord(product);
     }
 
+    @Override
+    public IStockRecord makeAtomicStockRecord(IProduct product) {
+        return new AtomicStockRecord(product);
+    }
+
     @Override
     public IShop makeShop() {
         return new Shop();
     }
 
+    @Override
+    public IShop makeConcurrentShop() {
+        return new ConcurrentShop();
+    }
+
+    @Override
+    public IShop makeColumnarShop() {
+        return new ColumnarShop();
+    }
+
+    @Override
+    public IShop makeOffHeapShop() {
+        return new OffHeapShop();
+    }
+
+    @Override
+    public IShop makeOffHeapShop(int maximumNumberOfProducts) {
+        return new OffHeapShop(maximumNumberOfProducts);
+    }
+
     @Override
     public ICustomer makeCustomer() {
         return new Customer();
     }
 
+    @Override
+    public ICustomer makeConcurrentCustomer() {
+        return new ConcurrentCustomer();
+    }
+
+    @Override
+    public IOrderBatch makeOrderBatch() {
+        return new OrderBatch();
+    }
+
 }
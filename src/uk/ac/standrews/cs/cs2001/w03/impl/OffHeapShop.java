@@ -0,0 +1,1016 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractFactoryClient;
+import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IStockRecord;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents a shop whose products are kept outside the Java heap, for catalogs of many millions of products.
+ * Each product is a fixed size slot in a direct {@link ByteBuffer}, holding its bar code key, stock, price, sales and revenue.
+ * The slots form an open addressing hash table keyed by the bar code, so the table is also the index,
+ * and the garbage collector sees a single buffer however many products there are.
+ * The table is searched and emptied slots are filled as in {@link BarCodeIndex}, through {@link BarCodeIndex.Slots}.
+ * EAN/UPC bar codes are keyed by their {@link PackedBarCode}; other bar codes are given a key of their own,
+ * which is the only per-product data kept on the heap.
+ * Descriptions are kept in a second direct buffer, and products are made again from the slot when asked for,
+ * so the products returned are equal to, but not the same objects as, the ones registered.
+ * {@link OffHeapShop#getStockRecord(String)} returns an {@link IStockRecord} which reads and writes the slot directly.
+ * As in {@link Shop}, reservations are kept by a {@link ReservedStock}.
+ * A single buffer is indexed by int, so the table is at most 2^25 slots and, as it is kept at most half full,
+ * a shop holds at most {@link OffHeapShop#MAX_NUMBER_OF_PRODUCTS} products.
+ */
+public class OffHeapShop extends AbstractFactoryClient implements IShop {
+
+    /**
+     * The most products any shop can hold, which fill half of the largest table a single buffer can index.
+     */
+    public static final int MAX_NUMBER_OF_PRODUCTS = 1 << 24;
+
+    /**
+     * The reservations passed when buying without any.
+     */
+    private static final long[] NO_RESERVATIONS = new long[0];
+
+    /**
+     * The key of an empty slot. Packed bar codes are always positive and the keys given out for other bar codes are negative.
+     */
+    private static final long EMPTY = 0;
+
+    /**
+     * The position of the bar code key in a slot.
+     */
+    private static final int KEY = 0;
+
+    /**
+     * The position of the stock count in a slot, which includes the units held by reservations.
+     */
+    private static final int STOCK = 8;
+
+    /**
+     * The position of the number of units held by reservations in a slot.
+     */
+    private static final int HELD = 12;
+
+    /**
+     * The position of the price in a slot.
+     */
+    private static final int PRICE = 16;
+
+    /**
+     * The position of the number of sales in a slot.
+     */
+    private static final int SALES = 20;
+
+    /**
+     * The position of the revenue in a slot.
+     */
+    private static final int REVENUE = 24;
+
+    /**
+     * The position in a slot of the registration number, which orders products by when they were registered.
+     */
+    private static final int SEQUENCE = 32;
+
+    /**
+     * The position in a slot of where the description starts in {@link OffHeapShop#descriptions}.
+     */
+    private static final int DESCRIPTION_START = 40;
+
+    /**
+     * The position in a slot of the number of characters of the description.
+     */
+    private static final int DESCRIPTION_LENGTH = 44;
+
+    /**
+     * The number of bytes in a slot.
+     */
+    private static final int SLOT_SIZE = 48;
+
+    /**
+     * The number of slots the table starts with. Must be a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The number of bytes the description buffer starts with.
+     */
+    private static final int INITIAL_DESCRIPTIONS_SIZE = 16 * 1024;
+
+    /**
+     * A reservation's reference to the product it holds units of.
+     * The registration number tells the product apart from one registered later with the same bar code.
+     */
+    private static final class Hold {
+
+        /**
+         * The bar code key of the product.
+         */
+        private final long key;
+
+        /**
+         * The registration number of the product.
+         */
+        private final long sequence;
+
+        private Hold(long key, long sequence) {
+            this.key = key;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The slots of the table.
+     */
+    private ByteBuffer table;
+
+    /**
+     * The number of slots in the table.
+     */
+    private int capacity;
+
+    /**
+     * The most products this shop can hold.
+     */
+    private final int maximumNumberOfProducts;
+
+    /**
+     * The descriptions of the products, as characters, one after the other.
+     */
+    private ByteBuffer descriptions;
+
+    /**
+     * Where the next description is written in {@link OffHeapShop#descriptions}.
+     */
+    private int descriptionsEnd;
+
+    /**
+     * The keys given to bar codes which cannot be packed.
+     */
+    private HashMap<String, Long> otherKeys;
+
+    /**
+     * The bar codes which cannot be packed, keyed by the key they were given.
+     */
+    private HashMap<Long, String> otherBarCodes;
+
+    /**
+     * The key given to the next bar code which cannot be packed.
+     */
+    private long nextOtherKey;
+
+    /**
+     * The registration number given to the next product.
+     */
+    private long nextSequence;
+
+    /**
+     * The number of products in the shop.
+     */
+    private int numberOfProducts;
+
+    /**
+     * The total shop revenue from all sales.
+     */
+    private long revenue;
+
+    /**
+     * The total count of stock over all products in the shop.
+     * Each product may hold up to {@link Integer#MAX_VALUE} units, so the total is kept as a long.
+     */
+    private long totalStockCount;
+
+    /**
+     * The total number of units sold, over all products.
+     */
+    private long totalNumberOfSales;
+
+    /**
+     * The reservations of stock that have not yet expired.
+     */
+    private ReservedStock<Integer, Hold> reservations;
+
+    /**
+     * The slots of {@link OffHeapShop#table}, for searching it and filling the slots of unregistered products.
+     */
+    private final BarCodeIndex.Slots slots = new BarCodeIndex.Slots() {
+
+        @Override
+        public boolean isEmpty(int slot) {
+            return table.getLong(base(slot) + KEY) == EMPTY;
+        }
+
+        @Override
+        public long keyAt(int slot) {
+            return table.getLong(base(slot) + KEY);
+        }
+
+        @Override
+        public void move(int from, int to) {
+            copySlot(from, to);
+            clearSlot(from);
+        }
+    };
+
+    /**
+     * The table, as seen by the reservations, which are kept with a {@link Hold} on their product.
+     */
+    private final class TableStock implements ReservedStock.Stock<Integer, Hold> {
+
+        @Override
+        public Integer find(String barCode) {
+
+            int slot = findSlot(barCode);
+            return (slot == NOT_REGISTERED) ? null : slot;
+
+        }
+
+        @Override
+        public Hold keyOf(Integer slot) {
+            return new Hold(table.getLong(base(slot) + KEY), table.getLong(base(slot) + SEQUENCE));
+        }
+
+        @Override
+        public Integer productOf(Hold hold) {
+
+            int slot = slotOf(hold);
+            return (slot == NOT_REGISTERED) ? null : slot;
+
+        }
+
+        @Override
+        public int availableOf(Integer slot) {
+            return table.getInt(base(slot) + STOCK) - table.getInt(base(slot) + HELD);
+        }
+
+        @Override
+        public void addHeld(Integer slot, int count) {
+            table.putInt(base(slot) + HELD, table.getInt(base(slot) + HELD) + count);
+        }
+
+        @Override
+        public void sell(Integer slot, int count) {
+            OffHeapShop.this.sell(slot, count);
+        }
+    }
+
+    /**
+     * Finds where a slot starts in the table.
+     *
+     * @param slot the slot
+     * @return the position of the slot's first byte
+     */
+    private static int base(int slot) {
+        return slot * SLOT_SIZE;
+    }
+
+    /**
+     * Gets the key of a bar code.
+     *
+     * @param barCode the bar code, which may be null
+     * @return the key, or {@link PackedBarCode#NOT_PACKED} if the bar code cannot be packed and has not been given a key
+     */
+    private long keyOf(String barCode) {
+
+        long packed = PackedBarCode.pack(barCode);
+        if (packed != PackedBarCode.NOT_PACKED) {
+            return packed;
+        }
+
+        return otherKeys.getOrDefault(barCode, PackedBarCode.NOT_PACKED);
+
+    }
+
+    /**
+     * Turns a key back into its bar code.
+     *
+     * @param key the bar code key
+     * @return the bar code
+     */
+    private String barCodeOf(long key) {
+        return (key > 0) ? PackedBarCode.toString(key) : otherBarCodes.get(key);
+    }
+
+    /**
+     * Finds the slot holding a key.
+     *
+     * @param key the bar code key
+     * @return the slot, or {@link IShop#NOT_REGISTERED} if no product has that key
+     */
+    private int find(long key) {
+
+        if (key == PackedBarCode.NOT_PACKED) {
+            return NOT_REGISTERED;
+        }
+
+        int slot = BarCodeIndex.probe(key, capacity - 1, slots);
+        return slots.isEmpty(slot) ? NOT_REGISTERED : slot;
+
+    }
+
+    /**
+     * Finds the slot of the product with the specified bar code.
+     *
+     * @param barCode the bar code of the product
+     * @return the slot, or {@link IShop#NOT_REGISTERED} if the product does not exist in the shop
+     */
+    private int findSlot(String barCode) {
+        return find(keyOf(barCode));
+    }
+
+    /**
+     * Finds the slot of the product with the specified bar code.
+     *
+     * @param barCode the bar code of the product
+     * @return the slot
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     */
+    private int getSlot(String barCode) throws ProductNotRegisteredException {
+
+        int slot = findSlot(barCode);
+        if (slot == NOT_REGISTERED) {
+            throw new ProductNotRegisteredException();
+        }
+
+        return slot;
+
+    }
+
+    /**
+     * Finds the slot of the product a reservation holds units of.
+     *
+     * @param hold the reservation's reference to the product
+     * @return the slot, or {@link IShop#NOT_REGISTERED} if the product has been unregistered since
+     */
+    private int slotOf(Hold hold) {
+
+        int slot = find(hold.key);
+        if (slot == NOT_REGISTERED || table.getLong(base(slot) + SEQUENCE) != hold.sequence) {
+            return NOT_REGISTERED;
+        }
+
+        return slot;
+
+    }
+
+    /**
+     * Copies a slot over another.
+     *
+     * @param from the slot to copy
+     * @param to   the slot to copy it to
+     */
+    private void copySlot(int from, int to) {
+
+        for (int i = 0; i < SLOT_SIZE; i += 8) {
+            table.putLong(base(to) + i, table.getLong(base(from) + i));
+        }
+
+    }
+
+    /**
+     * Empties a slot.
+     *
+     * @param slot the slot to empty
+     */
+    private void clearSlot(int slot) {
+
+        for (int i = 0; i < SLOT_SIZE; i += 8) {
+            table.putLong(base(slot) + i, 0);
+        }
+
+    }
+
+    /**
+     * Makes the table twice as large, putting every product in its slot in the new table.
+     */
+    private void grow() {
+
+        //The number of products is checked first, so the table never outgrows what an int can index.
+        assert capacity < 2 * MAX_NUMBER_OF_PRODUCTS;
+
+        ByteBuffer old = table;
+        int oldCapacity = capacity;
+
+        capacity *= 2;
+        table = allocate(capacity * SLOT_SIZE);
+
+        for (int slot = 0; slot < oldCapacity; slot++) {
+
+            long key = old.getLong(base(slot) + KEY);
+            if (key == EMPTY) {
+                continue;
+            }
+
+            int to = BarCodeIndex.probe(key, capacity - 1, slots);
+            for (int i = 0; i < SLOT_SIZE; i += 8) {
+                table.putLong(base(to) + i, old.getLong(base(slot) + i));
+            }
+
+        }
+
+    }
+
+    /**
+     * Allocates a zeroed buffer outside the heap.
+     *
+     * @param size the number of bytes
+     * @return the buffer
+     */
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Writes a description after the others.
+     * If there is no room, the descriptions are copied to a new buffer with room for it,
+     * leaving out the ones of products which have been unregistered.
+     *
+     * @param description the description
+     * @return where the description starts
+     */
+    private int writeDescription(String description) {
+
+        //Both are worked out as longs, as they may not fit in an int when the buffer is nearly full.
+        long size = description.length() * 2L;
+
+        if (descriptionsEnd + size > descriptions.capacity()) {
+
+            long live = size;
+            for (int slot = 0; slot < capacity; slot++) {
+                if (table.getLong(base(slot) + KEY) != EMPTY) {
+                    live += table.getInt(base(slot) + DESCRIPTION_LENGTH) * 2L;
+                }
+            }
+            if (live > Integer.MAX_VALUE / 2) {
+                throw new IllegalStateException("The shop cannot hold any more descriptions!");
+            }
+
+            ByteBuffer old = descriptions;
+            descriptions = allocate((int) Math.max(live * 2, old.capacity()));
+            descriptionsEnd = 0;
+
+            for (int slot = 0; slot < capacity; slot++) {
+
+                if (table.getLong(base(slot) + KEY) == EMPTY) {
+                    continue;
+                }
+
+                int start = table.getInt(base(slot) + DESCRIPTION_START);
+                int length = table.getInt(base(slot) + DESCRIPTION_LENGTH);
+
+                table.putInt(base(slot) + DESCRIPTION_START, descriptionsEnd);
+                for (int i = 0; i < length * 2; i += 2) {
+                    descriptions.putChar(descriptionsEnd + i, old.getChar(start + i));
+                }
+                descriptionsEnd += length * 2;
+
+            }
+
+        }
+
+        int start = descriptionsEnd;
+        for (int i = 0; i < description.length(); i++) {
+            descriptions.putChar(start + i * 2, description.charAt(i));
+        }
+        descriptionsEnd += (int) size;
+
+        return start;
+
+    }
+
+    /**
+     * Reads the description of a product.
+     *
+     * @param slot the slot of the product
+     * @return the description
+     */
+    private String readDescription(int slot) {
+
+        int start = table.getInt(base(slot) + DESCRIPTION_START);
+        char[] chars = new char[table.getInt(base(slot) + DESCRIPTION_LENGTH)];
+
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = descriptions.getChar(start + i * 2);
+        }
+
+        return new String(chars);
+
+    }
+
+    /**
+     * Makes the product in a slot.
+     *
+     * @param slot the slot of the product
+     * @return a product equal to the one registered
+     */
+    private IProduct productAt(int slot) {
+        return getFactory().makeProduct(barCodeOf(table.getLong(base(slot) + KEY)), readDescription(slot));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException when the shop already holds as many products as it can
+     */
+    @Override
+    public void registerProduct(IProduct product) throws BarCodeAlreadyInUseException {
+
+        if (product == null) {
+            product = getFactory().makeProduct(null, null);
+        }
+
+        String barCode = product.getBarCode();
+        long key = keyOf(barCode);
+        if (find(key) != NOT_REGISTERED) {
+            throw new BarCodeAlreadyInUseException();
+        }
+
+        if (numberOfProducts == maximumNumberOfProducts) {
+            throw new IllegalStateException("The shop cannot hold any more products!");
+        }
+
+        if ((numberOfProducts + 1) * 2 > capacity) {
+            grow();
+        }
+
+        int descriptionStart = writeDescription(product.getDescription());
+
+        if (key == PackedBarCode.NOT_PACKED) {
+            key = nextOtherKey--;
+            otherKeys.put(barCode, key);
+            otherBarCodes.put(key, barCode);
+        }
+
+        int base = base(BarCodeIndex.probe(key, capacity - 1, slots));
+        table.putLong(base + KEY, key);
+        table.putInt(base + STOCK, 0);
+        table.putInt(base + HELD, 0);
+        table.putInt(base + PRICE, StockRecord.DEFAULT_PRICE);
+        table.putInt(base + SALES, 0);
+        table.putLong(base + REVENUE, 0);
+        table.putLong(base + SEQUENCE, nextSequence++);
+        table.putInt(base + DESCRIPTION_START, descriptionStart);
+        table.putInt(base + DESCRIPTION_LENGTH, product.getDescription().length());
+
+        numberOfProducts++;
+
+    }
+
+    @Override
+    public void unregisterProduct(IProduct product) throws ProductNotRegisteredException {
+
+        if (product == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        long key = keyOf(product.getBarCode());
+        int hole = find(key);
+        if (hole == NOT_REGISTERED) {
+            throw new ProductNotRegisteredException();
+        }
+
+        totalStockCount -= table.getInt(base(hole) + STOCK);
+        clearSlot(hole);
+        BarCodeIndex.closeHole(hole, capacity - 1, slots);
+        numberOfProducts--;
+
+        if (key < 0) {
+            otherKeys.remove(otherBarCodes.remove(key));
+        }
+
+    }
+
+    @Override
+    public void addStock(String barCode) throws ProductNotRegisteredException {
+        addStock(barCode, 1);
+    }
+
+    @Override
+    public void addStock(String barCode, int count) throws ProductNotRegisteredException {
+        addStockAt(getSlot(barCode), count);
+    }
+
+    /**
+     * Adds stock to a product. The stock count stops at the maximum, as with a stock record.
+     *
+     * @param slot  the slot of the product
+     * @param count the number of units to add
+     */
+    private void addStockAt(int slot, int count) {
+
+        StockRecord.checkCount(count);
+
+        int stock = table.getInt(base(slot) + STOCK);
+        int added = Math.min(count, Integer.MAX_VALUE - stock);
+
+        table.putInt(base(slot) + STOCK, stock + added);
+        totalStockCount += added;
+
+    }
+
+    @Override
+    public void buyProduct(String barCode) throws StockUnavailableException, ProductNotRegisteredException {
+        buyProduct(barCode, 1);
+    }
+
+    @Override
+    public void buyProduct(String barCode, int count) throws StockUnavailableException, ProductNotRegisteredException {
+        buyProductAt(getSlot(barCode), count);
+    }
+
+    /**
+     * Buys units of a product which are not held by reservations.
+     *
+     * @param slot  the slot of the product
+     * @param count the number of units to buy
+     * @throws StockUnavailableException if fewer units than requested are available
+     */
+    private void buyProductAt(int slot, int count) throws StockUnavailableException {
+        reservations.buy(slot, count);
+    }
+
+    /**
+     * Sells units of a product and adds the sale to the shop totals.
+     * The caller must have checked that enough units are available.
+     *
+     * @param slot  the slot of the product to sell
+     * @param count the number of units to sell
+     */
+    private void sell(int slot, int count) {
+
+        int base = base(slot);
+        long cost = (long) table.getInt(base + PRICE) * count;
+        int sales = table.getInt(base + SALES);
+
+        table.putInt(base + STOCK, table.getInt(base + STOCK) - count);
+        table.putInt(base + SALES, (sales > Integer.MAX_VALUE - count) ? Integer.MAX_VALUE : sales + count);
+        table.putLong(base + REVENUE, table.getLong(base + REVENUE) + cost);
+
+        revenue += cost;
+        totalStockCount -= count;
+        totalNumberOfSales += count;
+
+    }
+
+    @Override
+    public void buyProducts(Map<String, Integer> quantities) throws StockUnavailableException, ProductNotRegisteredException {
+        buyProducts(quantities, NO_RESERVATIONS);
+    }
+
+    @Override
+    public void buyProducts(Map<String, Integer> quantities, long[] reservationIds) throws StockUnavailableException, ProductNotRegisteredException {
+        reservations.buy(quantities, reservationIds);
+    }
+
+    @Override
+    public long reserve(String barCode, int count, long replacing) throws StockUnavailableException, ProductNotRegisteredException {
+        return reservations.reserve(getSlot(barCode), count, replacing);
+    }
+
+    @Override
+    public void releaseReservation(long reservation) {
+        reservations.release(reservation);
+    }
+
+    @Override
+    public void setReservationTimeout(long milliseconds) {
+        reservations.setTimeout(milliseconds);
+    }
+
+    @Override
+    public int getNumberOfProducts() {
+        return numberOfProducts;
+    }
+
+    @Override
+    public int getTotalStockCount() {
+        return Math.toIntExact(getTotalStockCountAsLong());
+    }
+
+    @Override
+    public long getTotalStockCountAsLong() {
+
+        assert totalStockCount == countTotalStock() : "Total stock count is out of sync with the table!";
+        return totalStockCount;
+
+    }
+
+    /**
+     * Calculates the total stock count by going through every slot of the table.
+     * This is only used to verify {@link OffHeapShop#totalStockCount}.
+     * Empty slots have a stock count of zero, so they do not need to be skipped.
+     *
+     * @return the sum of the stock counts
+     */
+    private long countTotalStock() {
+
+        long totalStock = 0;
+
+        for (int slot = 0; slot < capacity; slot++) {
+            totalStock += table.getInt(base(slot) + STOCK);
+        }
+        return totalStock;
+
+    }
+
+    @Override
+    public int getStockCount(String barCode) throws ProductNotRegisteredException {
+        return table.getInt(base(getSlot(barCode)) + STOCK);
+    }
+
+    @Override
+    public int findStockCount(String barCode) {
+
+        int slot = findSlot(barCode);
+        return (slot == NOT_REGISTERED) ? NOT_REGISTERED : table.getInt(base(slot) + STOCK);
+
+    }
+
+    @Override
+    public int getAvailableCount(String barCode) throws ProductNotRegisteredException {
+
+        return reservations.availableOf(getSlot(barCode));
+
+    }
+
+    @Override
+    public int findAvailableCount(String barCode) {
+
+        int slot = findSlot(barCode);
+        return (slot == NOT_REGISTERED) ? NOT_REGISTERED : reservations.availableOf(slot);
+
+    }
+
+    @Override
+    public int getNumberOfSales(String barCode) throws ProductNotRegisteredException {
+        return table.getInt(base(getSlot(barCode)) + SALES);
+    }
+
+    @Override
+    public int findNumberOfSales(String barCode) {
+
+        int slot = findSlot(barCode);
+        return (slot == NOT_REGISTERED) ? NOT_REGISTERED : table.getInt(base(slot) + SALES);
+
+    }
+
+    @Override
+    public long getTotalNumberOfSales() {
+        return totalNumberOfSales;
+    }
+
+    /**
+     * Returns whether a product ranks above another: it has more sales, or as many and was registered earlier.
+     *
+     * @param slot  the slot of the product
+     * @param other the slot of the other product
+     * @return true if the product ranks above the other one
+     */
+    private boolean ranksAbove(int slot, int other) {
+
+        int sales = table.getInt(base(slot) + SALES);
+        int otherSales = table.getInt(base(other) + SALES);
+
+        if (sales != otherSales) {
+            return sales > otherSales;
+        }
+        return table.getLong(base(slot) + SEQUENCE) < table.getLong(base(other) + SEQUENCE);
+
+    }
+
+    @Override
+    public IProduct getMostPopular() throws ProductNotRegisteredException {
+
+        int popular = NOT_REGISTERED;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (table.getLong(base(slot) + KEY) != EMPTY && (popular == NOT_REGISTERED || ranksAbove(slot, popular))) {
+                popular = slot;
+            }
+        }
+
+        if (popular == NOT_REGISTERED) {
+            throw new ProductNotRegisteredException();
+        }
+
+        return productAt(popular);
+    }
+
+    @Override
+    public List<IProduct> getTopSelling(int count) {
+
+        StockRecord.checkCount(count);
+
+        List<IProduct> topSelling = new ArrayList<>();
+        for (int slot : SalesRanking.selectTop(capacity, slot -> !slots.isEmpty(slot),
+                (a, b) -> (a.equals(b)) ? 0 : (ranksAbove(a, b) ? 1 : -1), count)) {
+            topSelling.add(productAt(slot));
+        }
+
+        return topSelling;
+
+    }
+
+    @Override
+    public IProduct getProduct(String barCode) throws ProductNotRegisteredException {
+        return productAt(getSlot(barCode));
+    }
+
+    @Override
+    public IProduct findProduct(String barCode) {
+
+        int slot = findSlot(barCode);
+        return (slot == NOT_REGISTERED) ? null : productAt(slot);
+
+    }
+
+    @Override
+    public void setPriceOf(String barCode, int price) throws ProductNotRegisteredException {
+        setPriceAt(getSlot(barCode), price);
+    }
+
+    /**
+     * Sets the price of a product, or the default price if the given one is not positive, as with a stock record.
+     *
+     * @param slot  the slot of the product
+     * @param price the price
+     */
+    private void setPriceAt(int slot, int price) {
+        table.putInt(base(slot) + PRICE, (price <= 0) ? StockRecord.DEFAULT_PRICE : price);
+    }
+
+    @Override
+    public int getPriceOf(String barCode) throws ProductNotRegisteredException {
+        return table.getInt(base(getSlot(barCode)) + PRICE);
+    }
+
+    @Override
+    public int findPriceOf(String barCode) {
+
+        int slot = findSlot(barCode);
+        return (slot == NOT_REGISTERED) ? NOT_REGISTERED : table.getInt(base(slot) + PRICE);
+
+    }
+
+    @Override
+    public int getRevenue() {
+        return Math.toIntExact(revenue);
+    }
+
+    @Override
+    public long getRevenueAsLong() {
+        return revenue;
+    }
+
+    @Override
+    public long getRevenueOf(String barCode) throws ProductNotRegisteredException {
+        return table.getLong(base(getSlot(barCode)) + REVENUE);
+    }
+
+    /**
+     * Gets a view of the stock of a product, which reads and writes its slot in the table directly.
+     * Stock bought through the view is taken from the units not held by reservations, and counts towards the shop's totals.
+     * Once the product is unregistered, every method of the view throws an {@link IllegalStateException}.
+     *
+     * @param barCode the bar code of the product
+     * @return the view of the product's stock
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     */
+    public IStockRecord getStockRecord(String barCode) throws ProductNotRegisteredException {
+
+        int base = base(getSlot(barCode));
+        return new StockRecordView(new Hold(table.getLong(base + KEY), table.getLong(base + SEQUENCE)));
+
+    }
+
+    /**
+     * A view of the stock of a product in the table.
+     * It only knows which product it is for, and finds the product's slot on every call,
+     * as products move between slots when the table grows or others are unregistered.
+     */
+    private final class StockRecordView implements IStockRecord {
+
+        /**
+         * The product the view is for.
+         */
+        private final Hold product;
+
+        private StockRecordView(Hold product) {
+            this.product = product;
+        }
+
+        /**
+         * Finds the slot of the product.
+         *
+         * @return the slot
+         * @throws IllegalStateException if the product has been unregistered
+         */
+        private int slot() {
+
+            int slot = slotOf(product);
+            if (slot == NOT_REGISTERED) {
+                throw new IllegalStateException("The product is no longer registered in the shop!");
+            }
+
+            return slot;
+
+        }
+
+        @Override
+        public IProduct getProduct() {
+            return productAt(slot());
+        }
+
+        @Override
+        public int getStockCount() {
+            return table.getInt(base(slot()) + STOCK);
+        }
+
+        @Override
+        public int getNumberOfSales() {
+            return table.getInt(base(slot()) + SALES);
+        }
+
+        @Override
+        public long getRevenue() {
+            return table.getLong(base(slot()) + REVENUE);
+        }
+
+        @Override
+        public void addStock() {
+            addStock(1);
+        }
+
+        @Override
+        public void addStock(int count) {
+            addStockAt(slot(), count);
+        }
+
+        @Override
+        public void buyProduct() throws StockUnavailableException {
+            buyProduct(1);
+        }
+
+        @Override
+        public void buyProduct(int count) throws StockUnavailableException {
+            buyProductAt(slot(), count);
+        }
+
+        @Override
+        public void setPrice(int price) {
+            setPriceAt(slot(), price);
+        }
+
+        @Override
+        public int getPrice() {
+            return table.getInt(base(slot()) + PRICE);
+        }
+    }
+
+    /**
+     * Creates a new {@link OffHeapShop} instance with no products, which can hold as many as any shop can.
+     */
+    OffHeapShop() {
+        this(MAX_NUMBER_OF_PRODUCTS);
+    }
+
+    /**
+     * Creates a new {@link OffHeapShop} instance with no products, which can hold at most the given number of them.
+     *
+     * @param maximumNumberOfProducts the most products the shop can hold
+     * @throws IllegalArgumentException when the number is negative or more than {@link OffHeapShop#MAX_NUMBER_OF_PRODUCTS}
+     */
+    OffHeapShop(int maximumNumberOfProducts) {
+
+        if (maximumNumberOfProducts < 0 || maximumNumberOfProducts > MAX_NUMBER_OF_PRODUCTS) {
+            throw new IllegalArgumentException("Argument maximumNumberOfProducts should be between 0 and "
+                    + MAX_NUMBER_OF_PRODUCTS + "!");
+        }
+
+        this.maximumNumberOfProducts = maximumNumberOfProducts;
+        capacity = INITIAL_CAPACITY;
+        table = allocate(capacity * SLOT_SIZE);
+        descriptions = allocate(INITIAL_DESCRIPTIONS_SIZE);
+        descriptionsEnd = 0;
+        otherKeys = new HashMap<>();
+        otherBarCodes = new HashMap<>();
+        nextOtherKey = -2;
+        nextSequence = 0;
+        numberOfProducts = 0;
+        revenue = 0;
+        totalStockCount = 0;
+        totalNumberOfSales = 0;
+        reservations = new ReservedStock<>(new TableStock());
+
+    }
+
+}
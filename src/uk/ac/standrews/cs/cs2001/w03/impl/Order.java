@@ -7,13 +7,26 @@ import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
-import uk.ac.standrews.cs.cs2001.w03.interfaces.IStockRecord;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.ICustomer;
 
-import java.util.LinkedList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * This class represents an {@link IOrder} made by a {@link ICustomer} to a specific {@link IShop}.
+ * The total quantity and cost are kept up to date as items change, rather than calculated on request.
+ * When assertions are enabled, every read of a total is checked against a full scan of the items.
+ * Each item holds a reservation of its quantity in the shop, so the stock it counted on is still there on completion,
+ * unless the order is left for longer than the shop holds reservations.
+ * The items are kept in parallel arrays, one slot per item, in the order they were added,
+ * with a map from bar code to slot to find them.
+ * Removing an item only empties its slot, and the arrays are compacted once more of their slots are empty than used,
+ * so the items stay in the order they were added and removing one takes constant time on average.
  *
  * @author 150009974
  * @version 1.0
@@ -25,15 +38,142 @@ public class Order implements IOrder {
      */
     private IShop shop;
 
+    /**
+     * Told when the order is completed, so that the customer who made it can keep count.
+     */
+    private Consumer<Order> onComplete;
+
     /**
      * Whether or not the order is complete.
      */
     private boolean complete;
 
     /**
-     * The container for the items in the order.
+     * The number of slots the item arrays start with.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * The slot of each item in the item arrays, keyed by the bar code of its product.
+     */
+    private BarCodeIndex<Integer> slots;
+
+    /**
+     * The product of each item, or null for the slot of an item which has been removed.
+     */
+    private IProduct[] products;
+
+    /**
+     * The price of one unit of each item, as it was in the shop when the item was added.
+     */
+    private int[] prices;
+
+    /**
+     * The quantity of each item.
+     */
+    private int[] quantities;
+
+    /**
+     * The identifier of the reservation held in the shop for each item,
+     * or {@link IShop#NO_RESERVATION} if the item holds none, which is the case for items with no quantity.
+     */
+    private long[] reservations;
+
+    /**
+     * The number of items in the order.
+     */
+    private int numberOfItems;
+
+    /**
+     * The number of slots in use, including the empty slots of removed items, which are the first slots of the item arrays.
+     */
+    private int usedSlots;
+
+    /**
+     * The total quantity of all items in the order.
+     */
+    private int totalQuantity;
+
+    /**
+     * The total cost of all items in the order.
+     */
+    private long totalCost;
+
+    /**
+     * Looks up the slot of the item with the specified bar code.
+     *
+     * @param barCode the bar code of the item
+     * @return the slot of the item in the item arrays
+     * @throws ProductNotRegisteredException when there is no such item in the order
+     */
+    private int slotOf(String barCode) throws ProductNotRegisteredException {
+
+        Integer slot = slots.get(barCode);
+        if (slot == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        return slot;
+
+    }
+
+    /**
+     * Puts a new item with no quantity in the next free slot, making the item arrays larger if they are full.
+     *
+     * @param product the product of the item
+     * @param price   the price of one unit of the item
+     * @return the slot of the item
      */
-    private LinkedList<IStockRecord> items;
+    private int addSlot(IProduct product, int price) {
+
+        if (usedSlots == products.length) {
+            int capacity = products.length * 2;
+            products = Arrays.copyOf(products, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            reservations = Arrays.copyOf(reservations, capacity);
+        }
+
+        int slot = usedSlots++;
+        numberOfItems++;
+        products[slot] = product;
+        prices[slot] = price;
+        quantities[slot] = 0;
+        reservations[slot] = IShop.NO_RESERVATION;
+        slots.put(product.getBarCode(), slot);
+
+        return slot;
+
+    }
+
+    /**
+     * Moves the items down into the empty slots of removed items, keeping them in the order they were added.
+     */
+    private void compact() {
+
+        int to = 0;
+
+        for (int from = 0; from < usedSlots; from++) {
+
+            if (products[from] == null) {
+                continue;
+            }
+
+            if (from != to) {
+                products[to] = products[from];
+                prices[to] = prices[from];
+                quantities[to] = quantities[from];
+                reservations[to] = reservations[from];
+                slots.put(products[to].getBarCode(), to);
+            }
+            to++;
+
+        }
+
+        Arrays.fill(products, to, usedSlots, null);
+        usedSlots = to;
+
+    }
 
     @Override
     public void addItem(String barCode) throws ProductNotRegisteredException, BarCodeAlreadyInUseException, OrderAlreadyCompleteException {
@@ -42,15 +182,17 @@ public class Order implements IOrder {
             throw new OrderAlreadyCompleteException();
         }
 
-        for (IStockRecord item : items) {
-            if (item.getProduct().getBarCode().equals(barCode)) {
-                throw new BarCodeAlreadyInUseException();
-            }
+        if (slots.containsKey(barCode)) {
+            throw new BarCodeAlreadyInUseException();
+        }
+
+        IProduct product = shop.findProduct(barCode);
+        int price = shop.findPriceOf(barCode);
+        if (product == null || price == IShop.NOT_REGISTERED) {
+            throw new ProductNotRegisteredException();
         }
 
-        IStockRecord record = Factory.getInstance().makeStockRecord(shop.getProduct(barCode));
-        record.setPrice(shop.getPriceOf(barCode)); //this is the line that can throw ProductNotRegisteredException
-        items.add(record);
+        addSlot(product, price);
 
     }
 
@@ -61,35 +203,38 @@ public class Order implements IOrder {
             throw new OrderAlreadyCompleteException();
         }
 
-        for (IStockRecord item : items) {
-            IProduct product = item.getProduct();
-            if (product.getBarCode().equals(barCode)) {
-                items.remove(item);
-                return product;
-            }
-        }
+        int slot = slotOf(barCode);
+        IProduct product = products[slot];
 
-        throw new ProductNotRegisteredException();
+        shop.releaseReservation(reservations[slot]);
 
-    }
+        totalQuantity -= quantities[slot];
+        totalCost -= (long) prices[slot] * quantities[slot];
 
-    @Override
-    public IProduct getItem(String barCode) throws ProductNotRegisteredException {
+        //Empty the slot, leaving the items after it where they are.
+        products[slot] = null;
+        quantities[slot] = 0;
+        reservations[slot] = IShop.NO_RESERVATION;
+        slots.remove(barCode);
+        numberOfItems--;
 
-        for (IStockRecord item : items) {
-            IProduct product = item.getProduct();
-            if (product.getBarCode().equals(barCode)) {
-                return product;
-            }
+        //Each compaction follows at least as many removals as there are items left, so it costs constant time per removal.
+        if (usedSlots - numberOfItems > numberOfItems) {
+            compact();
         }
 
-        throw new ProductNotRegisteredException();
+        return product;
 
     }
 
+    @Override
+    public IProduct getItem(String barCode) throws ProductNotRegisteredException {
+        return products[slotOf(barCode)];
+    }
+
     @Override
     public int getNumberOfItems() {
-        return items.size();
+        return numberOfItems;
     }
 
     @Override
@@ -99,21 +244,15 @@ public class Order implements IOrder {
             throw new OrderAlreadyCompleteException();
         }
 
-        for (IStockRecord item : items) {
-            if (item.getProduct().getBarCode().equals(barCode)) {
+        int slot = slotOf(barCode);
 
-                if (item.getStockCount() < shop.getStockCount(barCode)) {
-                    item.addStock();
-                    return;
-                }
-                else {
-                    throw new StockUnavailableException();
-                }
+        //Grow the reservation first, so the extra unit cannot be bought by someone else before completion.
+        reservations[slot] = shop.reserve(barCode, quantities[slot] + 1, reservations[slot]);
 
-            }
-        }
+        quantities[slot]++;
+        totalQuantity++;
+        totalCost += prices[slot];
 
-        throw new ProductNotRegisteredException();
     }
 
     @Override
@@ -123,44 +262,54 @@ public class Order implements IOrder {
             throw new OrderAlreadyCompleteException();
         }
 
-        for (IStockRecord item : items) {
-            if (item.getProduct().getBarCode().equals(barCode)) {
-
-                if (item.getStockCount() > 0) {
-                    item.buyProduct();
-                    return;
-                }
-                else {
-                    throw new StockUnavailableException();
-                }
+        int slot = slotOf(barCode);
 
-            }
+        if (quantities[slot] > 0) {
+            quantities[slot]--;
+            totalQuantity--;
+            totalCost -= prices[slot];
+        }
+        else {
+            throw new StockUnavailableException();
         }
 
-        throw new ProductNotRegisteredException();
+        try {
+            reservations[slot] = shop.reserve(barCode, quantities[slot], reservations[slot]);
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException e) {
+            //The reservation has expired and its units are gone, so the item is left without one until completion.
+            shop.releaseReservation(reservations[slot]);
+            reservations[slot] = IShop.NO_RESERVATION;
+        }
 
     }
 
     @Override
     public int getQuantityOf(String barCode) throws ProductNotRegisteredException {
+        return quantities[slotOf(barCode)];
+    }
 
-        for (IStockRecord item : items) {
-            if (item.getProduct().getBarCode().equals(barCode)) {
-                return item.getStockCount();
-            }
-        }
+    @Override
+    public int getTotalQuantity() {
 
-        throw new ProductNotRegisteredException();
+        assert totalQuantity == countTotalQuantity() : "Total quantity is out of sync with the items!";
+        return totalQuantity;
 
     }
 
-    @Override
-    public int getTotalQuantity() {
+    /**
+     * Calculates the total quantity by going through all items.
+     * This is only used to verify {@link Order#totalQuantity}.
+     *
+     * @return the sum of the quantities of all items
+     */
+    private int countTotalQuantity() {
 
         int quantity = 0;
 
-        for (IStockRecord item : items) {
-            quantity += item.getStockCount();
+        //The empty slots have no quantity.
+        for (int i = 0; i < usedSlots; i++) {
+            quantity += quantities[i];
         }
 
         return quantity;
@@ -169,24 +318,42 @@ public class Order implements IOrder {
 
     @Override
     public int getCostOf(String barCode) throws ProductNotRegisteredException {
+        return Math.toIntExact(getCostOfAsLong(barCode));
+    }
 
-        for (IStockRecord item : items) {
-            if (item.getProduct().getBarCode().equals(barCode)) {
-                return (item.getPrice() * item.getStockCount());
-            }
-        }
+    @Override
+    public long getCostOfAsLong(String barCode) throws ProductNotRegisteredException {
 
-        throw new ProductNotRegisteredException();
+        int slot = slotOf(barCode);
+        return ((long) prices[slot] * quantities[slot]);
 
     }
 
     @Override
     public int getTotalOrderCost() {
+        return Math.toIntExact(getTotalOrderCostAsLong());
+    }
+
+    @Override
+    public long getTotalOrderCostAsLong() {
+
+        assert totalCost == countTotalCost() : "Total cost is out of sync with the items!";
+        return totalCost;
+
+    }
+
+    /**
+     * Calculates the total cost by going through all items.
+     * This is only used to verify {@link Order#totalCost}.
+     *
+     * @return the sum of the costs of all items
+     */
+    private long countTotalCost() {
 
-        int cost = 0;
+        long cost = 0;
 
-        for (IStockRecord item : items) {
-            cost += (item.getPrice() * item.getStockCount());
+        for (int i = 0; i < usedSlots; i++) {
+            cost += ((long) prices[i] * quantities[i]);
         }
 
         return cost;
@@ -200,22 +367,130 @@ public class Order implements IOrder {
             throw new OrderAlreadyCompleteException();
         }
 
-        //Check that there is enough stock for all items in the order.
-        for (IStockRecord item : items) {
-            //If a product is missing, the getStockCount() method will throw the exception
-            if (item.getStockCount() > shop.getStockCount(item.getProduct().getBarCode())) {
-                throw new StockUnavailableException();
+        //All lines are bought from the shop in a single transaction, so a failure leaves the shop unchanged.
+        shop.buyProducts(getQuantities(), getReservations());
+        markComplete();
+
+    }
+
+    /**
+     * Gets the quantity of every item, for buying them from the shop.
+     *
+     * @return the quantities keyed by bar code, in the order the items were added
+     */
+    Map<String, Integer> getQuantities() {
+
+        Map<String, Integer> byBarCode = new LinkedHashMap<>();
+        for (int i = 0; i < usedSlots; i++) {
+            if (products[i] != null) {
+                byBarCode.put(products[i].getBarCode(), quantities[i]);
             }
         }
 
-        for (IStockRecord item : items) {
-            String barCode = item.getProduct().getBarCode();
-            for (int i = 0; i < item.getStockCount(); i++) {
-                shop.buyProduct(barCode);
+        return byBarCode;
+
+    }
+
+    /**
+     * Gets the reservations held in the shop for the items.
+     *
+     * @return the identifiers of the reservations
+     */
+    long[] getReservations() {
+
+        int count = 0;
+        for (int i = 0; i < usedSlots; i++) {
+            if (reservations[i] != IShop.NO_RESERVATION) {
+                count++;
             }
         }
 
+        long[] held = new long[count];
+        int j = 0;
+        for (int i = 0; i < usedSlots; i++) {
+            if (reservations[i] != IShop.NO_RESERVATION) {
+                held[j++] = reservations[i];
+            }
+        }
+
+        return held;
+
+    }
+
+    /**
+     * Returns whether an item holds a reservation for its quantity.
+     * The reservation may have expired in the shop since it was made.
+     *
+     * @param barCode the bar code of the item
+     * @return true if the item holds a reservation
+     */
+    boolean holdsReservation(String barCode) {
+        Integer slot = slots.get(barCode);
+        return slot != null && reservations[slot] != IShop.NO_RESERVATION;
+    }
+
+    /**
+     * Marks the order as complete, once its items have been bought from the shop.
+     * Used by {@link Order#complete()} and by {@link OrderBatch}, which buys the items of many orders at once.
+     */
+    void markComplete() {
+
+        Arrays.fill(reservations, 0, usedSlots, IShop.NO_RESERVATION);
         complete = true;
+        onComplete.accept(this);
+
+    }
+
+    /**
+     * Writes the items of the order, for an {@link OrderArchive} to keep.
+     * Each item is written as the bar code and description of its product, its price and its quantity.
+     *
+     * @param out where to write the items
+     * @throws IOException when the items cannot be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+
+        out.writeInt(numberOfItems);
+
+        for (int i = 0; i < usedSlots; i++) {
+            if (products[i] != null) {
+                out.writeUTF(products[i].getBarCode());
+                out.writeUTF(products[i].getDescription());
+                out.writeInt(prices[i]);
+                out.writeInt(quantities[i]);
+            }
+        }
+
+    }
+
+    /**
+     * Reads back a completed order written by {@link Order#writeTo(DataOutput)}.
+     * The order is a copy of the one written, and holds new instances of its products.
+     *
+     * @param shop the shop with which the order was associated
+     * @param in   where to read the items from
+     * @return the completed order
+     * @throws IOException when the items cannot be read
+     */
+    static Order readFrom(IShop shop, DataInput in) throws IOException {
+
+        Order order = new Order(shop, completed -> { });
+
+        int numberOfItems = in.readInt();
+        for (int i = 0; i < numberOfItems; i++) {
+
+            IProduct product = Factory.getInstance().makeProduct(in.readUTF(), in.readUTF());
+            int slot = order.addSlot(product, in.readInt());
+            int quantity = in.readInt();
+
+            order.quantities[slot] = quantity;
+            order.totalQuantity += quantity;
+            order.totalCost += (long) order.prices[slot] * quantity;
+
+        }
+
+        order.complete = true;
+        return order;
 
     }
 
@@ -229,15 +504,30 @@ public class Order implements IOrder {
         return shop;
     }
 
-    Order(IShop shop) {
+    /**
+     * Creates a new, empty {@link Order} to the given shop.
+     *
+     * @param shop       the shop with which the order is associated
+     * @param onComplete told when the order is completed, normally by the customer who made the order
+     */
+    Order(IShop shop, Consumer<Order> onComplete) {
 
         if (shop == null) {
             throw new NullPointerException("Constructor argument shop of type IShop should not be null!");
         }
 
         this.shop = shop;
-
-        items = new LinkedList<>();
+        this.onComplete = onComplete;
+
+        slots = new BarCodeIndex<>();
+        products = new IProduct[INITIAL_CAPACITY];
+        prices = new int[INITIAL_CAPACITY];
+        quantities = new int[INITIAL_CAPACITY];
+        reservations = new long[INITIAL_CAPACITY];
+        numberOfItems = 0;
+        usedSlots = 0;
         complete = false;
+        totalQuantity = 0;
+        totalCost = 0;
     }
 }
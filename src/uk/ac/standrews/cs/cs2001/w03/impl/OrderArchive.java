@@ -0,0 +1,278 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import uk.ac.standrews.cs.cs2001.w03.common.OrderAlreadyCompleteException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps completed orders in a file rather than in memory.
+ * Each order is appended to the file once, and a small {@link IOrder} standing in for it is kept instead,
+ * which knows only its shop and where the order starts in the file.
+ * When the stand-in is read, the order is read back from the file through a cache of the orders read most recently,
+ * so going over the same few orders again does not read the file each time.
+ * All access to the file and the cache is synchronized on the archive.
+ * The file stays open until the archive is closed, after which its stand-ins can no longer be read.
+ */
+final class OrderArchive implements Closeable {
+
+    /**
+     * The path of the file the orders are appended to.
+     */
+    private final File path;
+
+    /**
+     * The file the orders are appended to.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * The orders read back most recently, keyed by where they start in the file, from least to most recently used.
+     */
+    private final LinkedHashMap<Long, Order> cache;
+
+    /**
+     * Puts a completed order in the archive.
+     *
+     * @param order the order to archive, which must be complete
+     * @return the order standing in for the archived one, which reads it back when needed
+     * @throws IOException when the order cannot be written to the file
+     */
+    synchronized IOrder archive(Order order) throws IOException {
+
+        //Write the whole order at once, with its length first, so it can be read back in one go.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        order.writeTo(new DataOutputStream(bytes));
+
+        long offset = file.length();
+        file.seek(offset);
+        file.writeInt(bytes.size());
+        file.write(bytes.toByteArray());
+
+        return new ArchivedOrder(order.getShop(), offset);
+
+    }
+
+    /**
+     * Gets an archived order, from the cache if it was read recently, otherwise from the file.
+     *
+     * @param shop   the shop with which the order is associated
+     * @param offset where the order starts in the file
+     * @return the order read back
+     * @throws UncheckedIOException when the order cannot be read from the file
+     */
+    private synchronized Order load(IShop shop, long offset) {
+
+        Order order = cache.get(offset);
+        if (order != null) {
+            return order;
+        }
+
+        try {
+
+            file.seek(offset);
+            byte[] bytes = new byte[file.readInt()];
+            file.readFully(bytes);
+
+            order = Order.readFrom(shop, new DataInputStream(new ByteArrayInputStream(bytes)));
+
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        cache.put(offset, order);
+        return order;
+
+    }
+
+    /**
+     * Reads back the whole of an order archived here, so that it can be moved to another archive or back into memory.
+     *
+     * @param order the stand-in returned when the order was archived
+     * @return the order
+     * @throws IOException when the order cannot be read from the file
+     */
+    Order readBack(IOrder order) throws IOException {
+
+        ArchivedOrder archived = (ArchivedOrder) order;
+
+        try {
+            return load(archived.shop, archived.offset);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+    }
+
+    /**
+     * Returns whether the archive writes to the given file.
+     *
+     * @param other the file
+     * @return true if the orders are appended to that file
+     * @throws IOException when the path of the file cannot be resolved
+     */
+    boolean writesTo(File other) throws IOException {
+        return path.equals(other.getCanonicalFile());
+    }
+
+    /**
+     * Closes the file. The stand-ins of the orders archived here can no longer be read afterwards.
+     *
+     * @throws IOException when the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+
+        cache.clear();
+        file.close();
+
+    }
+
+    /**
+     * An archived order, which reads itself back from the archive on every call.
+     * Being complete, it cannot be changed.
+     */
+    private final class ArchivedOrder implements IOrder {
+
+        /**
+         * The shop with which the order is associated.
+         */
+        private final IShop shop;
+
+        /**
+         * Where the order starts in the file.
+         */
+        private final long offset;
+
+        private ArchivedOrder(IShop shop, long offset) {
+            this.shop = shop;
+            this.offset = offset;
+        }
+
+        @Override
+        public void addItem(String barCode) throws OrderAlreadyCompleteException {
+            throw new OrderAlreadyCompleteException();
+        }
+
+        @Override
+        public IProduct removeItem(String barCode) throws OrderAlreadyCompleteException {
+            throw new OrderAlreadyCompleteException();
+        }
+
+        @Override
+        public IProduct getItem(String barCode) throws ProductNotRegisteredException {
+            return load(shop, offset).getItem(barCode);
+        }
+
+        @Override
+        public int getNumberOfItems() {
+            return load(shop, offset).getNumberOfItems();
+        }
+
+        @Override
+        public void increaseQuantityOf(String barCode) throws OrderAlreadyCompleteException {
+            throw new OrderAlreadyCompleteException();
+        }
+
+        @Override
+        public void decreaseQuantityOf(String barCode) throws OrderAlreadyCompleteException {
+            throw new OrderAlreadyCompleteException();
+        }
+
+        @Override
+        public int getQuantityOf(String barCode) throws ProductNotRegisteredException {
+            return load(shop, offset).getQuantityOf(barCode);
+        }
+
+        @Override
+        public int getTotalQuantity() {
+            return load(shop, offset).getTotalQuantity();
+        }
+
+        @Override
+        public int getCostOf(String barCode) throws ProductNotRegisteredException {
+            return load(shop, offset).getCostOf(barCode);
+        }
+
+        @Override
+        public long getCostOfAsLong(String barCode) throws ProductNotRegisteredException {
+            return load(shop, offset).getCostOfAsLong(barCode);
+        }
+
+        @Override
+        public int getTotalOrderCost() {
+            return load(shop, offset).getTotalOrderCost();
+        }
+
+        @Override
+        public long getTotalOrderCostAsLong() {
+            return load(shop, offset).getTotalOrderCostAsLong();
+        }
+
+        @Override
+        public void complete() throws OrderAlreadyCompleteException {
+            throw new OrderAlreadyCompleteException();
+        }
+
+        @Override
+        public boolean isComplete() {
+            return true;
+        }
+
+        @Override
+        public IShop getShop() {
+            return shop;
+        }
+    }
+
+    /**
+     * Creates a new, empty {@link OrderArchive}, writing to the given file.
+     * Anything already in the file is discarded.
+     *
+     * @param file      the file to append the orders to
+     * @param cacheSize the number of orders read back which are kept in memory
+     * @throws IOException when the file cannot be opened for writing
+     * @throws IllegalArgumentException when the cache size is negative
+     */
+    OrderArchive(File file, int cacheSize) throws IOException {
+
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("Argument cacheSize should not be negative!");
+        }
+
+        this.path = file.getCanonicalFile();
+        this.file = new RandomAccessFile(file, "rw");
+
+        try {
+            this.file.setLength(0);
+        }
+        catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+
+        cache = new LinkedHashMap<Long, Order>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Order> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+    }
+
+}
@@ -0,0 +1,220 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractShopException;
+import uk.ac.standrews.cs.cs2001.w03.common.OrderAlreadyCompleteException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrderBatch;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class represents a batch of orders which are completed together.
+ * The orders are grouped by shop, and the stock of each product is looked up once for the whole group.
+ * The orders that fit in the stock are then bought from the shop in a single purchase,
+ * rather than one purchase per order.
+ * If that purchase fails, which happens when reservations have expired since the stock was checked,
+ * the orders of that shop are completed one by one instead.
+ * Orders of other implementations are completed on their own, after the orders added before them to the same shop.
+ */
+public class OrderBatch implements IOrderBatch {
+
+    /**
+     * The orders waiting to be completed, in the order they were added.
+     */
+    private List<IOrder> orders;
+
+    @Override
+    public void addOrder(IOrder order) {
+
+        if (order == null) {
+            throw new NullPointerException("Argument order of type IOrder should not be null!");
+        }
+
+        orders.add(order);
+
+    }
+
+    @Override
+    public int getNumberOfOrders() {
+        return orders.size();
+    }
+
+    @Override
+    public Map<IOrder, AbstractShopException> complete() {
+
+        IdentityHashMap<IOrder, AbstractShopException> failures = new IdentityHashMap<>();
+        IdentityHashMap<IShop, List<Order>> byShop = new IdentityHashMap<>();
+        Set<IOrder> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (IOrder order : orders) {
+
+            //An order added to the batch twice is only completed once.
+            if (!seen.add(order)) {
+                continue;
+            }
+
+            if (order.isComplete()) {
+                failures.put(order, new OrderAlreadyCompleteException());
+            }
+            else if (order instanceof Order) {
+                byShop.computeIfAbsent(order.getShop(), shop -> new ArrayList<>()).add((Order) order);
+            }
+            else {
+                //Other implementations can only be completed on their own, but not ahead of the orders added before them.
+                List<Order> before = byShop.remove(order.getShop());
+                if (before != null) {
+                    completeGroup(order.getShop(), before, failures);
+                }
+                completeAlone(order, failures);
+            }
+
+        }
+
+        for (Map.Entry<IShop, List<Order>> group : byShop.entrySet()) {
+            completeGroup(group.getKey(), group.getValue(), failures);
+        }
+
+        //Report the failures in the order the orders were added.
+        Map<IOrder, AbstractShopException> report = new LinkedHashMap<>();
+        for (IOrder order : orders) {
+            AbstractShopException failure = failures.get(order);
+            if (failure != null) {
+                report.put(order, failure);
+            }
+        }
+
+        orders.clear();
+        return report;
+
+    }
+
+    /**
+     * Completes the orders made to one shop.
+     * Each order is checked against the stock left over by the orders before it,
+     * and all orders that fit are bought in a single purchase.
+     *
+     * @param shop     the shop to which the orders were made
+     * @param group    the orders, in the order they were added to the batch
+     * @param failures where the reason each failed order could not be completed is put
+     */
+    private static void completeGroup(IShop shop, List<Order> group, Map<IOrder, AbstractShopException> failures) {
+
+        //The units of each product that are not held by any reservation, as left by the accepted orders.
+        HashMap<String, Integer> available = new HashMap<>();
+
+        Map<String, Integer> totals = new LinkedHashMap<>();
+        List<Order> accepted = new ArrayList<>();
+        List<long[]> reservations = new ArrayList<>();
+        int numberOfReservations = 0;
+
+        for (Order order : group) {
+
+            Map<String, Integer> quantities = order.getQuantities();
+
+            try {
+
+                //The order can use the units held by its own reservations, and needs the rest from the available ones.
+                Map<String, Integer> needed = new HashMap<>();
+                for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+
+                    String barCode = line.getKey();
+                    int count = order.holdsReservation(barCode) ? 0 : line.getValue();
+
+                    int left = available.computeIfAbsent(barCode, shop::findAvailableCount);
+                    if (left == IShop.NOT_REGISTERED) {
+                        throw new ProductNotRegisteredException();
+                    }
+                    if (left < count) {
+                        throw new StockUnavailableException();
+                    }
+                    needed.put(barCode, count);
+
+                }
+
+                for (Map.Entry<String, Integer> line : needed.entrySet()) {
+                    available.put(line.getKey(), available.get(line.getKey()) - line.getValue());
+                }
+
+            }
+            catch (ProductNotRegisteredException | StockUnavailableException e) {
+                failures.put(order, e);
+                continue;
+            }
+
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                totals.merge(line.getKey(), line.getValue(), Integer::sum);
+            }
+
+            long[] held = order.getReservations();
+            reservations.add(held);
+            numberOfReservations += held.length;
+            accepted.add(order);
+
+        }
+
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        long[] allReservations = new long[numberOfReservations];
+        int i = 0;
+        for (long[] held : reservations) {
+            for (long reservation : held) {
+                allReservations[i++] = reservation;
+            }
+        }
+
+        try {
+            shop.buyProducts(totals, allReservations);
+        }
+        catch (ProductNotRegisteredException | StockUnavailableException e) {
+
+            //The stock was not as checked, so fall back to completing the orders one by one.
+            for (Order order : accepted) {
+                completeAlone(order, failures);
+            }
+            return;
+
+        }
+
+        for (Order order : accepted) {
+            order.markComplete();
+        }
+
+    }
+
+    /**
+     * Completes a single order on its own.
+     *
+     * @param order    the order to complete
+     * @param failures where the reason is put, if the order cannot be completed
+     */
+    private static void completeAlone(IOrder order, Map<IOrder, AbstractShopException> failures) {
+
+        try {
+            order.complete();
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException e) {
+            failures.put(order, e);
+        }
+
+    }
+
+    /**
+     * Creates a new, empty {@link OrderBatch}.
+     */
+    OrderBatch() {
+        orders = new ArrayList<>();
+    }
+
+}
@@ -0,0 +1,140 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+/**
+ * This class packs numeric bar codes into a single long, so that they can be kept, hashed and compared as primitives.
+ * Only EAN/UPC style codes (GTIN-8 to GTIN-14) are packed: 8 to 14 decimal digits, the last of which is a valid check digit.
+ * The digits are kept as a number in the low bits and the length in the high bits, so leading zeros are not lost.
+ * Any other bar code is not packed, and has to be kept as a string.
+ */
+final class PackedBarCode {
+
+    /**
+     * The value returned by {@link PackedBarCode#pack(String)} for bar codes which cannot be packed.
+     * No packed bar code has this value, as the length bits of a packed bar code are never all set.
+     */
+    static final long NOT_PACKED = -1L;
+
+    /**
+     * The fewest digits of a packed bar code.
+     */
+    private static final int MIN_LENGTH = 8;
+
+    /**
+     * The most digits of a packed bar code. The largest such number, 10^14 - 1, fits below the length bits.
+     */
+    private static final int MAX_LENGTH = 14;
+
+    /**
+     * The position of the length bits.
+     */
+    private static final int LENGTH_SHIFT = 48;
+
+    /**
+     * Selects the bits holding the digits.
+     */
+    private static final long DIGITS_MASK = (1L << LENGTH_SHIFT) - 1;
+
+    private PackedBarCode() {
+    }
+
+    /**
+     * Packs a bar code, if it is a GTIN with a valid check digit.
+     *
+     * @param barCode the bar code, which may be null
+     * @return the packed bar code, or {@link PackedBarCode#NOT_PACKED} if the bar code cannot be packed
+     */
+    static long pack(String barCode) {
+
+        if (barCode == null) {
+            return NOT_PACKED;
+        }
+
+        int length = barCode.length();
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return NOT_PACKED;
+        }
+
+        long digits = 0;
+        int sum = 0;
+
+        for (int i = 0; i < length; i++) {
+
+            char c = barCode.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_PACKED;
+            }
+
+            int digit = c - '0';
+            digits = digits * 10 + digit;
+
+            //Counting from the check digit, every second digit to its left is weighted three times.
+            if (i < length - 1) {
+                sum += ((length - i) % 2 == 0) ? 3 * digit : digit;
+            }
+
+        }
+
+        if ((10 - sum % 10) % 10 != digits % 10) {
+            return NOT_PACKED;
+        }
+
+        return ((long) length << LENGTH_SHIFT) | digits;
+
+    }
+
+    /**
+     * Gets the number of digits of a packed bar code.
+     *
+     * @param packed the packed bar code
+     * @return the number of digits
+     */
+    private static int lengthOf(long packed) {
+        return (int) (packed >>> LENGTH_SHIFT);
+    }
+
+    /**
+     * Turns a packed bar code back into the string it was packed from.
+     *
+     * @param packed the packed bar code
+     * @return the bar code
+     */
+    static String toString(long packed) {
+
+        char[] chars = new char[lengthOf(packed)];
+
+        long digits = packed & DIGITS_MASK;
+        for (int i = chars.length - 1; i >= 0; i--) {
+            chars[i] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+
+        return new String(chars);
+
+    }
+
+    /**
+     * Calculates the hash code of the string a packed bar code was packed from, without making the string.
+     *
+     * @param packed the packed bar code
+     * @return the same value as {@link String#hashCode()} of the bar code
+     */
+    static int hashCode(long packed) {
+
+        int length = lengthOf(packed);
+        long digits = packed & DIGITS_MASK;
+
+        long power = 1;
+        for (int i = 1; i < length; i++) {
+            power *= 10;
+        }
+
+        int hash = 0;
+        for (; power > 0; power /= 10) {
+            hash = 31 * hash + (char) ('0' + (digits / power) % 10);
+        }
+
+        return hash;
+
+    }
+
+}
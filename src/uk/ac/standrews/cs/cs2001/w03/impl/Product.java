@@ -2,10 +2,13 @@ package uk.ac.standrews.cs.cs2001.w03.impl;
 
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
 
+import java.util.Objects;
 import java.util.Random;
 
 /**
  * This class represents products that can be stocked and sold in a shop.
+ * EAN/UPC bar codes are kept packed into a long, as with {@link PackedBarCode}, rather than as a string,
+ * and are only turned back into a string the first time they are asked for.
  */
 public class Product implements IProduct {
 
@@ -16,9 +19,21 @@ public class Product implements IProduct {
     private static final int MAX_GENERATED_STRING_LENGTH = 15;
 
     /**
-     * The bar code of the product.
+     * The bar code of the product, packed, or {@link PackedBarCode#NOT_PACKED} if it cannot be packed.
+     */
+    private long packedBarCode;
+
+    /**
+     * The bar code of the product, if it cannot be packed, otherwise null.
      */
     private String barCode;
+
+    /**
+     * The packed bar code turned back into a string, or null if it has not been asked for yet.
+     * Not volatile: a thread may miss another's write and build it again, which is harmless as strings are immutable.
+     */
+    private String unpackedBarCode;
+
     /**
      * The description of the product.
      */
@@ -47,7 +62,20 @@ public class Product implements IProduct {
 
     @Override
     public String getBarCode() {
-        return barCode;
+
+        if (barCode != null) {
+            return barCode;
+        }
+
+        //Shops and orders look products up by their bar code string, so it is only built once.
+        String unpacked = unpackedBarCode;
+        if (unpacked == null) {
+            unpacked = PackedBarCode.toString(packedBarCode);
+            unpackedBarCode = unpacked;
+        }
+
+        return unpacked;
+
     }
 
     @Override
@@ -73,7 +101,9 @@ public class Product implements IProduct {
             description = generateRandomString();
         }
 
-        this.barCode = barCode;
+        this.packedBarCode = PackedBarCode.pack(barCode);
+        this.barCode = (packedBarCode == PackedBarCode.NOT_PACKED) ? barCode : null;
+        this.unpackedBarCode = null;
         this.description = description;
     }
 
@@ -82,24 +112,30 @@ public class Product implements IProduct {
      *
      * @param obj Object to compare to this one.
      * @return True if obj is an instance of {@link IProduct}
-     * and has the {@link Product#barCode}. False otherwise.
+     * and has the same bar code. False otherwise.
      */
     @Override
     public boolean equals(Object obj) {
 
+        //Another product of this class can be compared without turning either bar code into a string.
+        if (obj instanceof Product) {
+            Product other = (Product) obj;
+            return (packedBarCode == other.packedBarCode) && Objects.equals(barCode, other.barCode);
+        }
+
         return (obj != null) && (obj instanceof IProduct)
                 && (this.getBarCode().equals(((IProduct) obj).getBarCode()));
 
     }
 
     /**
-     * Returns the hash code of the {@link Product#barCode}.
+     * Returns the hash code of the bar code string.
      * That is the field used when comparing products.
      *
      * @return the bar code's hash code.
      */
     @Override
     public int hashCode() {
-        return this.getBarCode().hashCode();
+        return (barCode != null) ? barCode.hashCode() : PackedBarCode.hashCode(packedBarCode);
     }
 }
@@ -0,0 +1,329 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * This class keeps time-limited reservations of stock and finds the ones that have run out of time.
+ * Reservations are placed in the slot of a timer wheel that matches the tick at which they expire,
+ * so finding the expired ones only looks at the slots for the ticks that have passed,
+ * rather than at every reservation.
+ * The wheel is not turned by a thread of its own: it is advanced to the current time
+ * whenever {@link ReservationWheel#advance(Consumer)} is called.
+ *
+ * @param <K> the type of the key identifying what is reserved
+ */
+final class ReservationWheel<K> {
+
+    /**
+     * A number of units of something, held for a limited time.
+     *
+     * @param <K> the type of the key identifying what is reserved
+     */
+    static final class Reservation<K> {
+
+        /**
+         * The identifier of the reservation, unique within its wheel.
+         */
+        final long id;
+
+        /**
+         * What is reserved. Only changed through {@link ReservationWheel#rekey(UnaryOperator)}.
+         */
+        K key;
+
+        /**
+         * The number of reserved units.
+         */
+        final int count;
+
+        /**
+         * The tick at which the reservation expires.
+         */
+        private final long deadline;
+
+        /**
+         * Whether the reservation is still held, rather than expired or removed.
+         */
+        private boolean active;
+
+        /**
+         * Whether the reservation has an entry in a slot, which it keeps after being removed until the slot is swept.
+         */
+        private boolean queued;
+
+        private Reservation(long id, K key, int count, long deadline) {
+            this.id = id;
+            this.key = key;
+            this.count = count;
+            this.deadline = deadline;
+            this.active = true;
+            this.queued = true;
+        }
+    }
+
+    /**
+     * The time for which a reservation is held, unless changed, in milliseconds.
+     */
+    static final long DEFAULT_TIMEOUT = 15 * 60 * 1000L;
+
+    /**
+     * The length of a tick of the wheel, in milliseconds.
+     */
+    private static final long TICK = 10;
+
+    /**
+     * The number of slots in the wheel. Must be a power of two.
+     */
+    private static final int SLOTS = 512;
+
+    /**
+     * The source of the current time, in milliseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * The reservations expiring in each slot, including ones that have since been removed.
+     * The slot of a reservation is its deadline modulo the number of slots.
+     */
+    private final List<List<Reservation<K>>> slots;
+
+    /**
+     * The reservations that are still held, keyed by their identifier.
+     */
+    private final HashMap<Long, Reservation<K>> active;
+
+    /**
+     * The time for which new reservations are held, in milliseconds.
+     */
+    private long timeout;
+
+    /**
+     * The last tick up to which the wheel has been advanced.
+     */
+    private long currentTick;
+
+    /**
+     * The identifier given to the next reservation.
+     */
+    private long nextId;
+
+    /**
+     * Finds the tick that the current time falls into.
+     *
+     * @return the tick of the current time
+     */
+    private long now() {
+        return clock.getAsLong() / TICK;
+    }
+
+    /**
+     * Adds a new reservation, which expires once the timeout has passed.
+     *
+     * @param key   what is reserved
+     * @param count the number of reserved units
+     * @return the new reservation
+     */
+    Reservation<K> add(K key, int count) {
+
+        //Round up, so that a reservation is never dropped before its full time has passed.
+        long deadline = Math.max((clock.getAsLong() + timeout + TICK - 1) / TICK, currentTick + 1);
+
+        Reservation<K> reservation = new Reservation<>(nextId++, key, count, deadline);
+        active.put(reservation.id, reservation);
+        slots.get((int) (deadline & (SLOTS - 1))).add(reservation);
+
+        return reservation;
+
+    }
+
+    /**
+     * Looks up a reservation that is still held.
+     *
+     * @param id the identifier of the reservation
+     * @return the reservation, or null if it has expired or been removed
+     */
+    Reservation<K> get(long id) {
+        return active.get(id);
+    }
+
+    /**
+     * Removes a reservation before it expires.
+     *
+     * @param id the identifier of the reservation
+     * @return the removed reservation, or null if it had already expired or been removed
+     */
+    Reservation<K> remove(long id) {
+
+        Reservation<K> reservation = active.remove(id);
+        if (reservation != null) {
+            //The entry is left in its slot and dropped when the slot is next swept.
+            reservation.active = false;
+        }
+
+        return reservation;
+
+    }
+
+    /**
+     * Puts back a reservation taken out with {@link ReservationWheel#remove(long)}, with its identifier and deadline.
+     * If its time has run out in the meantime, it expires the next time the wheel is advanced.
+     *
+     * @param reservation the removed reservation
+     */
+    void restore(Reservation<K> reservation) {
+
+        reservation.active = true;
+        active.put(reservation.id, reservation);
+
+        //An entry still in its slot has not been swept, so its deadline is still to come and it is used again.
+        if (reservation.queued) {
+            return;
+        }
+
+        //The slot of a deadline that has already passed is not swept again until the next turn.
+        long tick = Math.max(reservation.deadline, currentTick + 1);
+        slots.get((int) (tick & (SLOTS - 1))).add(reservation);
+        reservation.queued = true;
+
+    }
+
+    /**
+     * Changes the key of every reservation still held, as when what is reserved is renumbered.
+     *
+     * @param mapping gives the new key for each old one
+     */
+    void rekey(UnaryOperator<K> mapping) {
+
+        for (Reservation<K> reservation : active.values()) {
+            reservation.key = mapping.apply(reservation.key);
+        }
+
+    }
+
+    /**
+     * Turns the wheel to the current time, removing every reservation whose time has run out.
+     *
+     * @param expired called with each reservation that expires
+     * @return true if any reservation expired
+     */
+    boolean advance(Consumer<Reservation<K>> expired) {
+
+        long target = now();
+        if (target <= currentTick) {
+            return false;
+        }
+
+        boolean any = false;
+
+        //After a full turn, every slot has been swept, so there is no need to go round again.
+        long ticks = Math.min(target - currentTick, SLOTS);
+        for (long tick = currentTick + 1; tick <= currentTick + ticks; tick++) {
+            any |= sweep(slots.get((int) (tick & (SLOTS - 1))), target, expired);
+        }
+
+        currentTick = target;
+        return any;
+
+    }
+
+    /**
+     * Drops the removed reservations from a slot and expires the ones due by the given tick.
+     * Reservations due in a later turn of the wheel are kept.
+     *
+     * @param slot    the slot to sweep
+     * @param target  the tick the wheel is being advanced to
+     * @param expired called with each reservation that expires
+     * @return true if any reservation expired
+     */
+    private boolean sweep(List<Reservation<K>> slot, long target, Consumer<Reservation<K>> expired) {
+
+        boolean any = false;
+        int kept = 0;
+
+        for (int i = 0; i < slot.size(); i++) {
+
+            Reservation<K> reservation = slot.get(i);
+
+            if (!reservation.active) {
+                reservation.queued = false;
+                continue;
+            }
+
+            if (reservation.deadline <= target) {
+                active.remove(reservation.id);
+                reservation.active = false;
+                reservation.queued = false;
+                expired.accept(reservation);
+                any = true;
+            }
+            else {
+                slot.set(kept++, reservation);
+            }
+
+        }
+
+        slot.subList(kept, slot.size()).clear();
+        return any;
+
+    }
+
+    /**
+     * Returns whether any reservation is still held.
+     *
+     * @return true if there are no reservations
+     */
+    boolean isEmpty() {
+        return active.isEmpty();
+    }
+
+    /**
+     * Sets the time for which new reservations are held.
+     * Reservations that have already been made keep their time.
+     *
+     * @param timeout the time in milliseconds
+     * @throws IllegalArgumentException when the timeout is negative
+     */
+    void setTimeout(long timeout) {
+
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Argument timeout should not be negative!");
+        }
+
+        this.timeout = timeout;
+
+    }
+
+    /**
+     * Creates a new, empty {@link ReservationWheel} that uses the given clock.
+     *
+     * @param clock the source of the current time, in milliseconds, which must never go back
+     */
+    ReservationWheel(LongSupplier clock) {
+
+        this.clock = clock;
+
+        slots = new ArrayList<>(SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+
+        active = new HashMap<>();
+        timeout = DEFAULT_TIMEOUT;
+        currentTick = now();
+        nextId = 0;
+
+    }
+
+    /**
+     * Creates a new, empty {@link ReservationWheel} that uses the system clock.
+     */
+    ReservationWheel() {
+        this(() -> System.nanoTime() / 1_000_000);
+    }
+
+}
@@ -0,0 +1,288 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import uk.ac.standrews.cs.cs2001.w03.impl.ReservationWheel.Reservation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * This class keeps the reservations of a shop's stock on a {@link ReservationWheel},
+ * and buys stock with and without them, for shops which are not shared between threads.
+ * The shop keeps the stock itself and gives access to it through a {@link Stock}, so the same rules hold in every shop:
+ * reserved units can only be bought with their reservation, and expired reservations give their units back
+ * before anyone is refused them.
+ *
+ * @param <P> the type the shop uses to refer to a registered product while it is being used
+ * @param <K> the type of the key kept with each reservation, which identifies the product for as long as it is registered
+ */
+final class ReservedStock<P, K> {
+
+    /**
+     * The stock of a shop, as seen by its reservations.
+     *
+     * @param <P> the type the shop uses to refer to a registered product while it is being used
+     * @param <K> the type of the key kept with each reservation
+     */
+    interface Stock<P, K> {
+
+        /**
+         * Looks up a product.
+         *
+         * @param barCode the bar code of the product
+         * @return the product, or null if the product does not exist in the shop
+         */
+        P find(String barCode);
+
+        /**
+         * Gets the key to keep with a reservation of a product.
+         *
+         * @param product the product
+         * @return the key
+         */
+        K keyOf(P product);
+
+        /**
+         * Finds the product a reservation was made for.
+         *
+         * @param key the key kept with the reservation
+         * @return the product, or null if it has been unregistered since the reservation was made
+         */
+        P productOf(K key);
+
+        /**
+         * Gets the number of units of a product that are in stock and not held by reservations.
+         *
+         * @param product the product
+         * @return the number of available units
+         */
+        int availableOf(P product);
+
+        /**
+         * Changes the number of units of a product that are held by reservations.
+         *
+         * @param product the product
+         * @param count   the number of units to hold, or to give back if negative
+         */
+        void addHeld(P product, int count);
+
+        /**
+         * Sells units of a product and adds the sale to the shop totals.
+         * Enough units have been checked to be available, counting those of the reservations given up for the sale.
+         *
+         * @param product the product to sell
+         * @param count   the number of units to sell
+         * @throws StockUnavailableException if fewer units than requested are in stock after all
+         */
+        void sell(P product, int count) throws StockUnavailableException;
+    }
+
+    /**
+     * The reservations of stock that have not yet expired.
+     */
+    private final ReservationWheel<K> reservations;
+
+    /**
+     * The stock the reservations are made on.
+     */
+    private final Stock<P, K> stock;
+
+    /**
+     * Gives back the units held by a reservation which has expired or been released.
+     *
+     * @param reservation the reservation
+     */
+    private void unhold(Reservation<K> reservation) {
+
+        P product = stock.productOf(reservation.key);
+        if (product == null) {
+            //The product has been unregistered since the reservation was made.
+            return;
+        }
+
+        stock.addHeld(product, -reservation.count);
+
+    }
+
+    /**
+     * Removes the reservations whose time has run out, making their units available again.
+     */
+    void expire() {
+        reservations.advance(this::unhold);
+    }
+
+    /**
+     * Gets the number of units of a product that are in stock and not held by reservations which are still held.
+     *
+     * @param product the product
+     * @return the number of available units
+     */
+    int availableOf(P product) {
+
+        expire();
+        return stock.availableOf(product);
+
+    }
+
+    /**
+     * Buys units of a product which are not held by reservations, as with {@link IShop#buyProduct(String, int)}.
+     *
+     * @param product the product
+     * @param count   the number of units to buy
+     * @throws StockUnavailableException if fewer units than requested are available
+     * @throws IllegalArgumentException  if the count is negative
+     */
+    void buy(P product, int count) throws StockUnavailableException {
+
+        StockRecord.checkCount(count);
+        if (availableOf(product) < count) {
+            throw new StockUnavailableException();
+        }
+
+        stock.sell(product, count);
+
+    }
+
+    /**
+     * Buys several products at once, using the units held by the given reservations,
+     * as with {@link IShop#buyProducts(Map, long[])}.
+     *
+     * @param quantities     the number of units to buy, keyed by bar code
+     * @param reservationIds the reservations whose units may be bought
+     * @throws StockUnavailableException     if fewer units than requested are available for any product
+     * @throws ProductNotRegisteredException if any product does not exist in the shop
+     */
+    void buy(Map<String, Integer> quantities, long[] reservationIds) throws StockUnavailableException, ProductNotRegisteredException {
+
+        expire();
+
+        //The units held by the given reservations are available to this purchase, on top of the unreserved ones.
+        HashMap<Long, Reservation<K>> own = new HashMap<>();
+        HashMap<P, Integer> ownCounts = new HashMap<>();
+        for (long id : reservationIds) {
+
+            Reservation<K> reservation = reservations.get(id);
+            if (reservation != null && own.put(id, reservation) == null) {
+                P product = stock.productOf(reservation.key);
+                if (product != null) {
+                    ownCounts.merge(product, reservation.count, Integer::sum);
+                }
+            }
+
+        }
+
+        //Check every line before buying anything, so that either all lines are bought or none are.
+        List<P> products = new ArrayList<>(quantities.size());
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+
+            P product = stock.find(line.getKey());
+            if (product == null) {
+                throw new ProductNotRegisteredException();
+            }
+
+            int count = line.getValue();
+            StockRecord.checkCount(count);
+            if (stock.availableOf(product) + ownCounts.getOrDefault(product, 0) < count) {
+                throw new StockUnavailableException();
+            }
+
+            products.add(product);
+
+        }
+
+        for (long id : own.keySet()) {
+            release(id);
+        }
+
+        int i = 0;
+        for (int count : quantities.values()) {
+            stock.sell(products.get(i++), count);
+        }
+
+    }
+
+    /**
+     * Reserves units of a product, as with {@link IShop#reserve(String, int, long)}.
+     *
+     * @param product   the product
+     * @param count     the number of units to reserve
+     * @param replacing the reservation to replace, or {@link IShop#NO_RESERVATION}
+     * @return the identifier of the new reservation, or {@link IShop#NO_RESERVATION} if no units were reserved
+     * @throws StockUnavailableException if fewer units than requested are available, counting those of the replaced reservation
+     * @throws IllegalArgumentException  if the count is negative
+     */
+    long reserve(P product, int count, long replacing) throws StockUnavailableException {
+
+        StockRecord.checkCount(count);
+        expire();
+
+        //The units of the replaced reservation can be kept, if it is for the same product.
+        Reservation<K> previous = reservations.get(replacing);
+        int kept = (previous != null && product.equals(stock.productOf(previous.key))) ? previous.count : 0;
+        if (stock.availableOf(product) + kept < count) {
+            throw new StockUnavailableException();
+        }
+
+        release(replacing);
+
+        if (count == 0) {
+            return IShop.NO_RESERVATION;
+        }
+
+        stock.addHeld(product, count);
+        return reservations.add(stock.keyOf(product), count).id;
+
+    }
+
+    /**
+     * Releases a reservation before it expires, as with {@link IShop#releaseReservation(long)}.
+     *
+     * @param id the identifier of the reservation
+     */
+    void release(long id) {
+
+        Reservation<K> released = reservations.remove(id);
+        if (released != null) {
+            unhold(released);
+        }
+
+    }
+
+    /**
+     * Sets the time for which new reservations are held.
+     *
+     * @param milliseconds the time in milliseconds
+     * @throws IllegalArgumentException when the time is negative
+     */
+    void setTimeout(long milliseconds) {
+        reservations.setTimeout(milliseconds);
+    }
+
+    /**
+     * Changes the key of every reservation still held, as when the shop renumbers its products.
+     *
+     * @param mapping gives the new key for each old one
+     */
+    void rekey(UnaryOperator<K> mapping) {
+        reservations.rekey(mapping);
+    }
+
+    /**
+     * Creates a new {@link ReservedStock} with no reservations.
+     *
+     * @param stock the stock the reservations are made on
+     */
+    ReservedStock(Stock<P, K> stock) {
+
+        this.stock = stock;
+        reservations = new ReservationWheel<>();
+
+    }
+
+}
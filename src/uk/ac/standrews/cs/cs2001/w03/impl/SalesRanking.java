@@ -0,0 +1,218 @@
+package uk.ac.standrews.cs.cs2001.w03.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * This class keeps items ordered by their number of sales, so that the best selling items
+ * can be retrieved without going through all of them.
+ * Items with the same number of sales are ordered by when they were added, earliest first.
+ * Shops which keep their products in numbered slots rather than in a ranking find the best selling ones
+ * with {@link SalesRanking#selectTop(int, IntPredicate, Comparator, int)} instead.
+ *
+ * @param <T> the type of the ranked items
+ */
+final class SalesRanking<T> {
+
+    /**
+     * The position of an item in the ranking.
+     *
+     * @param <T> the type of the ranked item
+     */
+    private static final class Entry<T> {
+
+        /**
+         * The ranked item.
+         */
+        private final T item;
+
+        /**
+         * The order in which the item was added to the ranking.
+         */
+        private final long sequence;
+
+        /**
+         * The number of sales of the item, as last reported to the ranking.
+         */
+        private int sales;
+
+        private Entry(T item, long sequence, int sales) {
+            this.item = item;
+            this.sequence = sequence;
+            this.sales = sales;
+        }
+    }
+
+    /**
+     * Orders entries by number of sales, greatest first, and then by {@link Entry#sequence}.
+     */
+    private static final Comparator<Entry<?>> BY_SALES = (a, b) -> {
+
+        if (a.sales != b.sales) {
+            return Integer.compare(b.sales, a.sales);
+        }
+        return Long.compare(a.sequence, b.sequence);
+
+    };
+
+    /**
+     * The entries of all ranked items.
+     */
+    private final HashMap<T, Entry<T>> entries;
+
+    /**
+     * The entries ordered by {@link SalesRanking#BY_SALES}.
+     */
+    private final TreeSet<Entry<T>> ranking;
+
+    /**
+     * The first entry in the {@link SalesRanking#ranking}, or null if there are none.
+     */
+    private Entry<T> top;
+
+    /**
+     * The sequence number given to the next added item.
+     */
+    private long nextSequence;
+
+    /**
+     * Adds an item to the ranking.
+     *
+     * @param item  the item to add
+     * @param sales the current number of sales of the item
+     */
+    void add(T item, int sales) {
+
+        Entry<T> entry = new Entry<>(item, nextSequence++, sales);
+        entries.put(item, entry);
+        ranking.add(entry);
+        top = ranking.first();
+
+    }
+
+    /**
+     * Moves an item to the position matching its new number of sales.
+     * Items that are not in the ranking are ignored.
+     *
+     * @param item  the item that was sold
+     * @param sales the new number of sales of the item
+     */
+    void update(T item, int sales) {
+
+        Entry<T> entry = entries.get(item);
+        if (entry == null || entry.sales == sales) {
+            return;
+        }
+
+        ranking.remove(entry);
+        entry.sales = sales;
+        ranking.add(entry);
+        top = ranking.first();
+
+    }
+
+    /**
+     * Removes an item from the ranking.
+     *
+     * @param item the item to remove
+     */
+    void remove(T item) {
+
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) {
+            return;
+        }
+
+        ranking.remove(entry);
+        top = ranking.isEmpty() ? null : ranking.first();
+
+    }
+
+    /**
+     * Returns the item with the most sales.
+     *
+     * @return the best selling item, or null if the ranking is empty
+     */
+    T getFirst() {
+        return (top == null) ? null : top.item;
+    }
+
+    /**
+     * Returns up to the specified number of items with the most sales, best selling first.
+     *
+     * @param count the maximum number of items to return
+     * @return the best selling items
+     */
+    List<T> getTop(int count) {
+
+        List<T> items = new ArrayList<>(Math.min(count, entries.size()));
+
+        Iterator<Entry<T>> iterator = ranking.iterator();
+        while (items.size() < count && iterator.hasNext()) {
+            items.add(iterator.next().item);
+        }
+
+        return items;
+
+    }
+
+    /**
+     * Finds the best ranked of the items kept in numbered slots, going through the slots once.
+     *
+     * @param slots    the number of slots
+     * @param occupied whether a slot holds an item
+     * @param ranking  orders slots by their items, with the item that ranks higher as the greater one
+     * @param count    the maximum number of items to return
+     * @return the slots of the best ranked items, best first
+     */
+    static List<Integer> selectTop(int slots, IntPredicate occupied, Comparator<Integer> ranking, int count) {
+
+        //Keep the best items found so far, with the worst of them at the head, ready to be replaced.
+        PriorityQueue<Integer> best = new PriorityQueue<>(ranking);
+
+        for (int slot = 0; slot < slots && count > 0; slot++) {
+
+            if (!occupied.test(slot)) {
+                continue;
+            }
+
+            if (best.size() < count) {
+                best.add(slot);
+            }
+            else if (ranking.compare(slot, best.peek()) > 0) {
+                best.poll();
+                best.add(slot);
+            }
+
+        }
+
+        List<Integer> top = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            top.add(best.poll());
+        }
+        Collections.reverse(top);
+
+        return top;
+
+    }
+
+    /**
+     * Creates a new, empty {@link SalesRanking}.
+     */
+    SalesRanking() {
+
+        entries = new HashMap<>();
+        ranking = new TreeSet<>(BY_SALES);
+        top = null;
+        nextSequence = 0;
+
+    }
+
+}
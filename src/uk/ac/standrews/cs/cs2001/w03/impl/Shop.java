@@ -9,38 +9,150 @@ import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IStockRecord;
 
-import java.util.LinkedList;
-import java.util.NoSuchElementException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This class represents a simple shop which can stock and sell products.
+ * The total stock count is kept up to date as stock changes, rather than calculated on request.
+ * When assertions are enabled, every read of the total is checked against a full scan of the records.
+ * Products are also kept ranked by number of sales, so the most popular ones are found without a scan.
+ * Reservations are kept by a {@link ReservedStock}, keyed by the record of the reserved product,
+ * and are expired whenever stock is checked, so expired reservations give their units back before anyone is refused them.
  */
 public class Shop extends AbstractFactoryClient implements IShop {
 
     /**
-     * A list of all {@link IStockRecord}-s in the shop.
+     * The reservations passed when buying without any.
      */
-    private LinkedList<IStockRecord> records;
+    private static final long[] NO_RESERVATIONS = new long[0];
+
+    /**
+     * All {@link IStockRecord}-s in the shop, keyed by the bar code of their product.
+     * EAN/UPC bar codes are kept packed, so they are looked up without comparing strings.
+     */
+    private BarCodeIndex<IStockRecord> records;
+
+    /**
+     * The stock records ranked by the number of sales of their product.
+     */
+    private SalesRanking<IStockRecord> popularity;
 
     /**
      * The total shop revenue from all sales.
      */
-    private int revenue;
+    private long revenue;
+
+    /**
+     * The total count of stock over all products in the shop.
+     * Each product may hold up to {@link Integer#MAX_VALUE} units, so the total is kept as a long.
+     */
+    private long totalStockCount;
+
+    /**
+     * The total number of units sold, over all products.
+     */
+    private long totalNumberOfSales;
+
+    /**
+     * The reservations of stock that have not yet expired.
+     */
+    private ReservedStock<IStockRecord, IStockRecord> reservations;
+
+    /**
+     * The number of units held by reservations, for each record with any.
+     */
+    private HashMap<IStockRecord, Integer> held;
+
+    /**
+     * The stock records, as seen by the reservations, which are kept with the record of their product.
+     */
+    private final class RecordStock implements ReservedStock.Stock<IStockRecord, IStockRecord> {
+
+        @Override
+        public IStockRecord find(String barCode) {
+            return findRecord(barCode);
+        }
+
+        @Override
+        public IStockRecord keyOf(IStockRecord record) {
+            return record;
+        }
+
+        @Override
+        public IStockRecord productOf(IStockRecord record) {
+            //A record with a reservation has held units for as long as it is registered.
+            return held.containsKey(record) ? record : null;
+        }
+
+        @Override
+        public int availableOf(IStockRecord record) {
+            return record.getStockCount() - heldOf(record);
+        }
+
+        @Override
+        public void addHeld(IStockRecord record, int count) {
+            held.merge(record, count, (before, change) -> (before + change == 0) ? null : before + change);
+        }
+
+        @Override
+        public void sell(IStockRecord record, int count) throws StockUnavailableException {
+            Shop.this.sell(record, count);
+        }
+    }
+
+    /**
+     * Looks up the {@link IStockRecord} of the product with the specified bar code.
+     *
+     * @param barCode the bar code of the product
+     * @return the stock record of that product, or null if the product does not exist in the shop
+     */
+    private IStockRecord findRecord(String barCode) {
+        return records.get(barCode);
+    }
+
+    /**
+     * Looks up the {@link IStockRecord} of the product with the specified bar code.
+     *
+     * @param barCode the bar code of the product
+     * @return the stock record of that product
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     */
+    private IStockRecord getRecord(String barCode) throws ProductNotRegisteredException {
+
+        IStockRecord record = findRecord(barCode);
+        if (record == null) {
+            throw new ProductNotRegisteredException();
+        }
+
+        return record;
+
+    }
+
+    /**
+     * Gets the number of units of a product that are held by reservations.
+     *
+     * @param record the record of the product
+     * @return the number of held units
+     */
+    private int heldOf(IStockRecord record) {
+        return held.getOrDefault(record, 0);
+    }
 
     @Override
     public void registerProduct(IProduct product) throws BarCodeAlreadyInUseException {
 
-        IProduct existingProduct;
-        for (IStockRecord record : records) {
-
-            existingProduct = record.getProduct();
-            if (existingProduct.equals(product)) {
-                throw new BarCodeAlreadyInUseException();
-            }
+        IStockRecord record = getFactory().makeStockRecord(product);
+        String barCode = record.getProduct().getBarCode();
 
+        if (records.containsKey(barCode)) {
+            throw new BarCodeAlreadyInUseException();
         }
 
-        records.add(getFactory().makeStockRecord(product));
+        records.put(barCode, record);
+        popularity.add(record, record.getNumberOfSales());
     }
 
     @Override
@@ -50,49 +162,85 @@ public class Shop extends AbstractFactoryClient implements IShop {
             throw new ProductNotRegisteredException();
         }
 
-        for (IStockRecord record : records) {
-            if (record.getProduct().equals(product)) {
-                records.remove(record);
-                return;
-            }
+        IStockRecord record = records.remove(product.getBarCode());
+        if (record == null) {
+            throw new ProductNotRegisteredException();
         }
 
-        throw new ProductNotRegisteredException();
+        totalStockCount -= record.getStockCount();
+        popularity.remove(record);
+        held.remove(record);
 
     }
 
     @Override
     public void addStock(String barCode) throws ProductNotRegisteredException {
+        addStock(barCode, 1);
+    }
 
-        for (IStockRecord record : records) {
-            if (record.getProduct().getBarCode().equals(barCode)) {
-                record.addStock();
-                return;
-            }
-        }
+    @Override
+    public void addStock(String barCode, int count) throws ProductNotRegisteredException {
+
+        IStockRecord record = getRecord(barCode);
 
-        throw new ProductNotRegisteredException();
+        //The record may not take all of the stock, if it reaches the maximum count.
+        int stockBefore = record.getStockCount();
+        record.addStock(count);
+        totalStockCount += record.getStockCount() - stockBefore;
 
     }
 
     @Override
     public void buyProduct(String barCode) throws StockUnavailableException, ProductNotRegisteredException {
+        buyProduct(barCode, 1);
+    }
 
-        for (IStockRecord record : records) {
-            if (record.getProduct().getBarCode().equals(barCode)) {
-
-                if (record.getStockCount() < 1) {
-                    throw new StockUnavailableException();
-                } else {
-                    record.buyProduct();
-                    revenue += record.getPrice();
-                    return;
-                }
-            }
-        }
+    @Override
+    public void buyProduct(String barCode, int count) throws StockUnavailableException, ProductNotRegisteredException {
+        reservations.buy(getRecord(barCode), count);
+    }
+
+    /**
+     * Sells units of a product and adds the sale to the shop totals.
+     * The caller must have checked that enough units are available.
+     *
+     * @param record the record of the product to sell
+     * @param count  the number of units to sell
+     * @throws StockUnavailableException if fewer units than requested are in stock
+     */
+    private void sell(IStockRecord record, int count) throws StockUnavailableException {
+
+        record.buyProduct(count);
+        revenue += (long) record.getPrice() * count;
+        totalStockCount -= count;
+        totalNumberOfSales += count;
+        popularity.update(record, record.getNumberOfSales());
 
-        throw new ProductNotRegisteredException();
+    }
 
+    @Override
+    public void buyProducts(Map<String, Integer> quantities) throws StockUnavailableException, ProductNotRegisteredException {
+        buyProducts(quantities, NO_RESERVATIONS);
+    }
+
+    @Override
+    public void buyProducts(Map<String, Integer> quantities, long[] reservationIds) throws StockUnavailableException, ProductNotRegisteredException {
+        reservations.buy(quantities, reservationIds);
+    }
+
+    @Override
+    public long reserve(String barCode, int count, long replacing) throws StockUnavailableException, ProductNotRegisteredException {
+        return reservations.reserve(getRecord(barCode), count, replacing);
+    }
+
+    @Override
+    public void releaseReservation(long reservation) {
+        reservations.release(reservation);
+    }
+
+    @Override
+    public void setReservationTimeout(long milliseconds) {
+        reservations.setTimeout(milliseconds);
     }
 
     @Override
@@ -102,10 +250,28 @@ public class Shop extends AbstractFactoryClient implements IShop {
 
     @Override
     public int getTotalStockCount() {
+        return Math.toIntExact(getTotalStockCountAsLong());
+    }
 
-        int totalStock = 0;
+    @Override
+    public long getTotalStockCountAsLong() {
+
+        assert totalStockCount == countTotalStock() : "Total stock count is out of sync with the stock records!";
+        return totalStockCount;
+
+    }
 
-        for (IStockRecord record : records) {
+    /**
+     * Calculates the total stock count by going through all records.
+     * This is only used to verify {@link Shop#totalStockCount}.
+     *
+     * @return the sum of the stock counts of all records
+     */
+    private long countTotalStock() {
+
+        long totalStock = 0;
+
+        for (IStockRecord record : records.values()) {
             totalStock += record.getStockCount();
         }
         return totalStock;
@@ -114,101 +280,134 @@ public class Shop extends AbstractFactoryClient implements IShop {
 
     @Override
     public int getStockCount(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getStockCount();
+    }
 
-        for (IStockRecord record : records) {
-            if (record.getProduct().getBarCode().equals(barCode)) {
-                return record.getStockCount();
-            }
-        }
+    @Override
+    public int findStockCount(String barCode) {
+
+        IStockRecord record = findRecord(barCode);
+        return (record == null) ? NOT_REGISTERED : record.getStockCount();
+
+    }
+
+    @Override
+    public int getAvailableCount(String barCode) throws ProductNotRegisteredException {
+
+        return reservations.availableOf(getRecord(barCode));
+
+    }
+
+    @Override
+    public int findAvailableCount(String barCode) {
+
+        IStockRecord record = findRecord(barCode);
+        return (record == null) ? NOT_REGISTERED : reservations.availableOf(record);
 
-        throw new ProductNotRegisteredException();
     }
 
     @Override
     public int getNumberOfSales(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getNumberOfSales();
+    }
 
-        for (IStockRecord record : records) {
-            if (record.getProduct().getBarCode().equals(barCode)) {
-                return record.getNumberOfSales();
-            }
-        }
+    @Override
+    public int findNumberOfSales(String barCode) {
 
-        throw new ProductNotRegisteredException();
+        IStockRecord record = findRecord(barCode);
+        return (record == null) ? NOT_REGISTERED : record.getNumberOfSales();
 
     }
 
+    @Override
+    public long getTotalNumberOfSales() {
+        return totalNumberOfSales;
+    }
+
     @Override
     public IProduct getMostPopular() throws ProductNotRegisteredException {
 
-        IStockRecord popular;
-        try {
-            popular = records.getFirst();
-        }
-        catch (NoSuchElementException e) {
-            throw new ProductNotRegisteredException();
-        }
+        IStockRecord popular = popularity.getFirst();
 
-        for (IStockRecord record : records) {
-            if (popular.getNumberOfSales() < record.getNumberOfSales()) {
-                popular = record;
-            }
+        if (popular == null) {
+            throw new ProductNotRegisteredException();
         }
 
         return popular.getProduct();
     }
 
     @Override
-    public IProduct getProduct(String barCode) throws ProductNotRegisteredException {
+    public List<IProduct> getTopSelling(int count) {
 
-        for (IStockRecord record : records) {
-            IProduct product = record.getProduct();
-            if (product.getBarCode().equals(barCode)) {
-                return product;
-            }
+        StockRecord.checkCount(count);
+
+        List<IProduct> products = new ArrayList<>();
+        for (IStockRecord record : popularity.getTop(count)) {
+            products.add(record.getProduct());
         }
 
-        throw new ProductNotRegisteredException();
+        return products;
+
     }
 
     @Override
-    public void setPriceOf(String barCode, int price) throws ProductNotRegisteredException {
+    public IProduct getProduct(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getProduct();
+    }
 
-        for (IStockRecord record : records) {
-            if (record.getProduct().getBarCode().equals(barCode)) {
-                record.setPrice(price);
-                return;
-            }
-        }
+    @Override
+    public IProduct findProduct(String barCode) {
+
+        IStockRecord record = findRecord(barCode);
+        return (record == null) ? null : record.getProduct();
 
-        throw new ProductNotRegisteredException();
+    }
 
+    @Override
+    public void setPriceOf(String barCode, int price) throws ProductNotRegisteredException {
+        getRecord(barCode).setPrice(price);
     }
 
     @Override
     public int getPriceOf(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getPrice();
+    }
 
-        for (IStockRecord record : records) {
-            if (record.getProduct().getBarCode().equals(barCode)) {
-                return record.getPrice();
-            }
-        }
+    @Override
+    public int findPriceOf(String barCode) {
 
-        throw new ProductNotRegisteredException();
+        IStockRecord record = findRecord(barCode);
+        return (record == null) ? NOT_REGISTERED : record.getPrice();
 
     }
 
     @Override
     public int getRevenue() {
+        return Math.toIntExact(revenue);
+    }
+
+    @Override
+    public long getRevenueAsLong() {
         return revenue;
     }
 
+    @Override
+    public long getRevenueOf(String barCode) throws ProductNotRegisteredException {
+        return getRecord(barCode).getRevenue();
+    }
+
     /**
      * Creates a new {@link Shop} instance with an empty {@link Shop#records} field.
      */
     Shop() {
 
-        records = new LinkedList<>();
+        records = new BarCodeIndex<>();
+        popularity = new SalesRanking<>();
         revenue = 0;
+        totalStockCount = 0;
+        totalNumberOfSales = 0;
+        reservations = new ReservedStock<>(new RecordStock());
+        held = new HashMap<>();
 
     }
 
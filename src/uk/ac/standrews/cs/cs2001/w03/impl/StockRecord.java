@@ -35,6 +35,11 @@ public class StockRecord implements IStockRecord {
      */
     private int numberOfSales;
 
+    /**
+     * The total amount earned from purchases of this object's {@link StockRecord#product}.
+     */
+    private long revenue;
+
     @Override
     public IProduct getProduct() {
         return product;
@@ -50,26 +55,64 @@ public class StockRecord implements IStockRecord {
         return numberOfSales;
     }
 
+    /**
+     * Checks that a count passed to one of the bulk methods is not negative.
+     *
+     * @param count the count to check
+     * @throws IllegalArgumentException when the count is negative
+     */
+    static void checkCount(int count) {
+
+        if (count < 0) {
+            throw new IllegalArgumentException("Argument count should not be negative!");
+        }
+
+    }
+
+    @Override
+    public long getRevenue() {
+        return revenue;
+    }
+
     @Override
     public void addStock() {
+        addStock(1);
+    }
+
+    @Override
+    public void addStock(int count) {
+
+        checkCount(count);
 
-        if (stockCount < Integer.MAX_VALUE) {
-            stockCount++;
+        if (stockCount > Integer.MAX_VALUE - count) {
+            stockCount = Integer.MAX_VALUE;
+        } else {
+            stockCount += count;
         }
 
     }
 
     @Override
     public void buyProduct() throws StockUnavailableException {
+        buyProduct(1);
+    }
+
+    @Override
+    public void buyProduct(int count) throws StockUnavailableException {
+
+        checkCount(count);
 
-        if (stockCount < 1) {
+        if (stockCount < count) {
             throw new StockUnavailableException();
         } else {
 
-            stockCount--;
+            stockCount -= count;
+            revenue += (long) price * count;
 
-            if (numberOfSales < Integer.MAX_VALUE) {
-                numberOfSales++;
+            if (numberOfSales > Integer.MAX_VALUE - count) {
+                numberOfSales = Integer.MAX_VALUE;
+            } else {
+                numberOfSales += count;
             }
 
         }
@@ -1,10 +1,17 @@
 package uk.ac.standrews.cs.cs2001.w03.interfaces;
 
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractShopException;
 import uk.ac.standrews.cs.cs2001.w03.common.NotEnoughMoneyException;
 import uk.ac.standrews.cs.cs2001.w03.common.OrderAlreadyCompleteException;
 import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
 import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Interface for a customer ADT.
  */
@@ -17,13 +24,28 @@ public interface ICustomer {
      */
     void setMoney(int money);
 
+    /**
+     * Sets the amount of money the customer has, as a 64-bit value.
+     *
+     * @param money the amount of money to be set
+     */
+    void setMoney(long money);
+
     /**
      * Getter for the amount of money the customer has at disposal.
      *
      * @return the amount of money
+     * @throws ArithmeticException when the amount is too large to be returned as an int
      */
     int getMoney();
 
+    /**
+     * Getter for the amount of money the customer has at disposal, as a 64-bit value.
+     *
+     * @return the amount of money
+     */
+    long getMoneyAsLong();
+
     /**
      * Returns the total number of orders the customer has ever made.
      *
@@ -62,6 +84,31 @@ public interface ICustomer {
      */
     IOrder getOrder(int index) throws IndexOutOfBoundsException;
 
+    /**
+     * Returns the orders the customer has made to a particular shop, in the order they were created.
+     * The returned list is a read-only view, which follows later changes, rather than a copy.
+     *
+     * @param shop the shop
+     * @return the orders made to the shop, which is empty if there are none
+     */
+    List<IOrder> getOrdersFrom(IShop shop);
+
+    /**
+     * Returns the orders which have not been completed yet, in the order they were created.
+     * The returned collection is a read-only view, which follows later changes, rather than a copy.
+     *
+     * @return the incomplete orders
+     */
+    Collection<IOrder> getIncompleteOrders();
+
+    /**
+     * Returns the orders which have been completed, in the order they were created.
+     * The returned collection is a read-only view, which follows later changes, rather than a copy.
+     *
+     * @return the completed orders
+     */
+    Collection<IOrder> getCompletedOrders();
+
     /**
      * Completes the {@link IOrder} at the specified index.
      * This includes and is limited to:
@@ -82,4 +129,64 @@ public interface ICustomer {
     void completeOrder(int index) throws StockUnavailableException, ProductNotRegisteredException,
             IndexOutOfBoundsException, OrderAlreadyCompleteException, NotEnoughMoneyException;
 
+    /**
+     * Completes the {@link IOrder}-s at the specified indices together, as with {@link ICustomer#completeOrder(int)}.
+     * The cost of each order is read once, the orders are bought from their shops in bulk,
+     * and the customer's money is reduced once, by the cost of the orders which were completed.
+     * Orders are paid for in the order of their indices: an order which costs more than the money left
+     * fails with a {@link NotEnoughMoneyException} and is skipped, and the money is still offered to the orders after it,
+     * so a cheaper order later on may be completed.
+     * Money set aside for an order which then fails for another reason is not offered to the orders after it.
+     * An order which cannot be completed is left unchanged and does not stop the others.
+     *
+     * @param indices indices of the {@link IOrder}-s to be completed
+     * @return the reason each failed order could not be completed, keyed by the order, in the order of the indices;
+     * orders which were completed are not included
+     * @throws IndexOutOfBoundsException when there is no order at one of the indices, in which case nothing is completed
+     */
+    Map<IOrder, AbstractShopException> completeOrders(int... indices) throws IndexOutOfBoundsException;
+
+    /**
+     * Completes every incomplete {@link IOrder} of the customer together, as with {@link ICustomer#completeOrders(int...)},
+     * in the order the orders were created.
+     *
+     * @return the reason each failed order could not be completed, keyed by the order;
+     * orders which were completed are not included
+     */
+    Map<IOrder, AbstractShopException> completeAllIncompleteOrders();
+
+    /**
+     * Starts keeping the customer's completed orders in a file rather than in memory.
+     * The orders which are already complete are written to the file straight away,
+     * and every order is written to it when it is completed from then on.
+     * An archived order is still returned by {@link ICustomer#getOrder(int)} and by the views of the orders,
+     * but is read back from the file when it is used, through a cache of the orders read most recently.
+     * Anything already in the file is discarded.
+     * If the orders are already being archived to another file, they are moved to this one and the other file is closed.
+     * If an order cannot be written, the completed orders are left where they were.
+     *
+     * @param file      the file to keep the completed orders in
+     * @param cacheSize the number of orders read back from the file which are kept in memory
+     * @throws IOException when the file cannot be opened or written to
+     * @throws IllegalArgumentException when the cache size is negative
+     * @throws IllegalStateException when the completed orders are already being archived to the same file
+     */
+    void archiveCompletedOrders(File file, int cacheSize) throws IOException;
+
+    /**
+     * Stops keeping the customer's completed orders in a file, reading them all back into memory and closing the file.
+     * Nothing happens if the orders are not being archived.
+     *
+     * @throws IOException when an order cannot be read back, in which case the orders are left in the file
+     */
+    void stopArchivingCompletedOrders() throws IOException;
+
+    /**
+     * Returns the error which last kept an order from being archived when it was completed.
+     * Such an order is kept in memory instead, and is written to the file the next time the archive is changed.
+     *
+     * @return the error, or null if every order completed since the archive was last changed has been archived
+     */
+    IOException getArchiveFailure();
+
 }
@@ -21,6 +21,14 @@ public interface IFactory {
      */
     IStockRecord makeStockRecord(IProduct product);
 
+    /**
+     * This method creates an instance of {@link IStockRecord} for a new product,
+     * which can be safely updated by multiple threads at once.
+     * @param product the product to use for this stock record
+     * @return the stock record
+     */
+    IStockRecord makeAtomicStockRecord(IProduct product);
+
     /**
      * Creates an instance of {@link IShop}.
      * 
@@ -28,6 +36,36 @@ public interface IFactory {
      */
     IShop makeShop();
 
+    /**
+     * Creates an instance of {@link IShop} which can be safely used by multiple threads at once.
+     *
+     * @return the shop
+     */
+    IShop makeConcurrentShop();
+
+    /**
+     * Creates an instance of {@link IShop} which keeps its stock in one array per field, for very large numbers of products.
+     *
+     * @return the shop
+     */
+    IShop makeColumnarShop();
+
+    /**
+     * Creates an instance of {@link IShop} which keeps its stock outside the Java heap, for catalogs of many millions of products.
+     *
+     * @return the shop
+     */
+    IShop makeOffHeapShop();
+
+    /**
+     * Creates an instance of {@link IShop} which keeps its stock outside the Java heap,
+     * and which cannot hold more than the given number of products.
+     *
+     * @param maximumNumberOfProducts the most products the shop can hold
+     * @return the shop
+     */
+    IShop makeOffHeapShop(int maximumNumberOfProducts);
+
     /**
      * Creates an instance of {@link ICustomer}.
      * This method is added for the extensions.
@@ -36,4 +74,18 @@ public interface IFactory {
      */
     ICustomer makeCustomer();
 
+    /**
+     * Creates an instance of {@link ICustomer} whose orders can be completed from multiple threads at once.
+     *
+     * @return the created customer
+     */
+    ICustomer makeConcurrentCustomer();
+
+    /**
+     * Creates an empty instance of {@link IOrderBatch}.
+     *
+     * @return the order batch
+     */
+    IOrderBatch makeOrderBatch();
+
 }
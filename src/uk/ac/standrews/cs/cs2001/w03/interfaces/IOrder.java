@@ -98,16 +98,35 @@ public interface IOrder {
      * @param barCode the bar code of the item
      * @return the calculated cost
      * @throws ProductNotRegisteredException when there is no product with the specified bar code
+     * @throws ArithmeticException           when the cost is too large to be returned as an int
      */
     int getCostOf(String barCode) throws ProductNotRegisteredException;
 
+    /**
+     * Calculates and returns the cost of a particular item in the order, as a 64-bit value.
+     * Takes into account multiples of that product.
+     *
+     * @param barCode the bar code of the item
+     * @return the calculated cost
+     * @throws ProductNotRegisteredException when there is no product with the specified bar code
+     */
+    long getCostOfAsLong(String barCode) throws ProductNotRegisteredException;
+
     /**
      * Calculate and return the total cost of all the stock in the order.
      *
      * @return the total cost of the order
+     * @throws ArithmeticException when the cost is too large to be returned as an int
      */
     int getTotalOrderCost();
 
+    /**
+     * Calculate and return the total cost of all the stock in the order, as a 64-bit value.
+     *
+     * @return the total cost of the order
+     */
+    long getTotalOrderCostAsLong();
+
     /**
      * Completes the order, making it impossible to amend it.
      *
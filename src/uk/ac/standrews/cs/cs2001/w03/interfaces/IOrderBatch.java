@@ -0,0 +1,37 @@
+package uk.ac.standrews.cs.cs2001.w03.interfaces;
+
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractShopException;
+
+import java.util.Map;
+
+/**
+ * Interface for a batch of orders which are completed together.
+ */
+public interface IOrderBatch {
+
+    /**
+     * Adds an order to the batch, to be completed with the others.
+     *
+     * @param order the order to add
+     */
+    void addOrder(IOrder order);
+
+    /**
+     * Gets the number of orders waiting in the batch.
+     *
+     * @return the number of orders added since the batch was last completed
+     */
+    int getNumberOfOrders();
+
+    /**
+     * Completes every order in the batch and empties it.
+     * Each order is completed or fails on its own, as with {@link IOrder#complete()}:
+     * an order that cannot be completed is left unchanged, and does not stop the others.
+     * When orders compete for the same stock, the ones added to the batch first are completed first.
+     *
+     * @return the reason each failed order could not be completed, keyed by the order,
+     * in the order the orders were added; orders which were completed are not included
+     */
+    Map<IOrder, AbstractShopException> complete();
+
+}
@@ -4,11 +4,26 @@ import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
 import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
 import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Interface for a simple shop ADT.
  */
 public interface IShop {
 
+    /**
+     * The value returned by the find methods, such as {@link IShop#findStockCount(String)},
+     * when no product with the given bar code is registered in the shop.
+     */
+    int NOT_REGISTERED = -1;
+
+    /**
+     * The value standing for no reservation, returned by {@link IShop#reserve(String, int, long)}
+     * when nothing is reserved, and which can be passed to it when there is no reservation to replace.
+     */
+    long NO_RESERVATION = -1L;
+
     /**
      * Registers the specified product for sale in the shop.
      *
@@ -33,15 +48,96 @@ public interface IShop {
      */
     void addStock(String barCode) throws ProductNotRegisteredException;
 
+    /**
+     * Adds the specified amount of stock for the product with given bar code in one step.
+     *
+     * @param barCode the bar code of the product
+     * @param count   the number of units to add
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     * @throws IllegalArgumentException      if the count is negative
+     */
+    void addStock(String barCode, int count) throws ProductNotRegisteredException;
+
     /**
      * Buys the product with given bar code from the shop.
      *
      * @param barCode the bar code of the product to be bought
-     * @throws StockUnavailableException     if the product is not currently in stock
+     * @throws StockUnavailableException     if the product is not currently in stock, or all of its stock is reserved
      * @throws ProductNotRegisteredException if the product does not exist in the shop
      */
     void buyProduct(String barCode) throws StockUnavailableException, ProductNotRegisteredException;
 
+    /**
+     * Buys the specified number of units of the product with given bar code from the shop in one step.
+     * Either all units are bought or none are.
+     *
+     * @param barCode the bar code of the product to be bought
+     * @param count   the number of units to buy
+     * @throws StockUnavailableException     if fewer units than requested are currently in stock and not reserved
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     * @throws IllegalArgumentException      if the count is negative
+     */
+    void buyProduct(String barCode, int count) throws StockUnavailableException, ProductNotRegisteredException;
+
+    /**
+     * Buys several products at once, as a single transaction: either every line is bought or none is.
+     * If any line cannot be bought, the shop is left as it was before the call.
+     *
+     * @param quantities the number of units to buy, keyed by the bar code of the product
+     * @throws StockUnavailableException     if fewer units of a product than requested are currently in stock
+     * @throws ProductNotRegisteredException if a product does not exist in the shop
+     * @throws IllegalArgumentException      if a count is negative
+     */
+    void buyProducts(Map<String, Integer> quantities) throws StockUnavailableException, ProductNotRegisteredException;
+
+    /**
+     * Buys several products at once, like {@link IShop#buyProducts(Map)}, using the stock held by
+     * the given reservations. The units held by a reservation can only be bought by passing the reservation here.
+     * The reservations are used up when the purchase succeeds, even if they held more units than were bought,
+     * and are kept when it fails. Reservations that have expired or been released are ignored.
+     *
+     * @param quantities   the number of units to buy, keyed by the bar code of the product
+     * @param reservations the identifiers of the reservations made for the purchase
+     * @throws StockUnavailableException     if fewer units of a product than requested are in stock and
+     *                                       not held by other reservations
+     * @throws ProductNotRegisteredException if a product does not exist in the shop
+     * @throws IllegalArgumentException      if a count is negative
+     */
+    void buyProducts(Map<String, Integer> quantities, long[] reservations) throws StockUnavailableException, ProductNotRegisteredException;
+
+    /**
+     * Holds units of the product with given bar code, so that they cannot be bought by anyone else
+     * until the reservation is released or expires.
+     * The new reservation replaces the given one, whose units count towards the new reservation
+     * if they are of the same product, so a reservation can be grown or shrunk without losing what it holds.
+     *
+     * @param barCode   the bar code of the product
+     * @param count     the number of units to hold
+     * @param replacing the identifier of the reservation to replace, or {@link IShop#NO_RESERVATION}
+     * @return the identifier of the new reservation, or {@link IShop#NO_RESERVATION} if the count is 0
+     * @throws StockUnavailableException     if fewer units than requested are in stock and not held by other reservations,
+     *                                       in which case the replaced reservation is kept
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     * @throws IllegalArgumentException      if the count is negative
+     */
+    long reserve(String barCode, int count, long replacing) throws StockUnavailableException, ProductNotRegisteredException;
+
+    /**
+     * Releases a reservation, so that the units it held can be bought by anyone.
+     * Nothing happens if the reservation has already expired or been released.
+     *
+     * @param reservation the identifier of the reservation
+     */
+    void releaseReservation(long reservation);
+
+    /**
+     * Sets the time for which new reservations are held before they expire.
+     *
+     * @param milliseconds the time in milliseconds
+     * @throws IllegalArgumentException if the time is negative
+     */
+    void setReservationTimeout(long milliseconds);
+
     /**
      * Gets the number of different products currently available in the shop. Multiple copies of the same product
      * only count once.
@@ -55,11 +151,21 @@ public interface IShop {
      * the shop has 2 cans of baked beans and 1 loaf of bread in stock.
      *
      * @return the total stock count over all products
+     * @throws ArithmeticException when the total stock count exceeds {@link Integer#MAX_VALUE}
      */
     int getTotalStockCount();
 
     /**
-     * Gets the stock count for a particular product.
+     * Gets the total count of stock over all products in the shop, as a 64-bit value.
+     * Use this instead of {@link IShop#getTotalStockCount()} when the total may exceed {@link Integer#MAX_VALUE},
+     * as each product may hold up to that many units.
+     *
+     * @return the total stock count over all products
+     */
+    long getTotalStockCountAsLong();
+
+    /**
+     * Gets the stock count for a particular product, including the units held by reservations.
      *
      * @param barCode the bar code of the product
      * @return the stock count for a particular product
@@ -67,6 +173,32 @@ public interface IShop {
      */
     int getStockCount(String barCode) throws ProductNotRegisteredException;
 
+    /**
+     * Gets the stock count for a particular product, without throwing an exception if it is missing.
+     *
+     * @param barCode the bar code of the product
+     * @return the stock count for the product, or {@link IShop#NOT_REGISTERED} if the product does not exist
+     */
+    int findStockCount(String barCode);
+
+    /**
+     * Gets the number of units of a particular product that are in stock and not held by a reservation.
+     *
+     * @param barCode the bar code of the product
+     * @return the number of units that can be bought without a reservation
+     * @throws ProductNotRegisteredException if the product does not exist in the shop
+     */
+    int getAvailableCount(String barCode) throws ProductNotRegisteredException;
+
+    /**
+     * Gets the number of units of a particular product that are in stock and not held by a reservation,
+     * without throwing an exception if the product is missing.
+     *
+     * @param barCode the bar code of the product
+     * @return the number of available units, or {@link IShop#NOT_REGISTERED} if the product does not exist
+     */
+    int findAvailableCount(String barCode);
+
     /**
      * Gets the total number of times that a given product was bought.
      *
@@ -76,6 +208,22 @@ public interface IShop {
      */
     int getNumberOfSales(String barCode) throws ProductNotRegisteredException;
 
+    /**
+     * Gets the total number of times that a given product was bought,
+     * without throwing an exception if it is missing.
+     *
+     * @param barCode the bar code of the product
+     * @return the number of sales of the product, or {@link IShop#NOT_REGISTERED} if the product does not exist
+     */
+    int findNumberOfSales(String barCode);
+
+    /**
+     * Gets the total number of units bought from the shop, over all products.
+     *
+     * @return the total number of sales
+     */
+    long getTotalNumberOfSales();
+
     /**
      * Gets the product that has been bought the greatest number of times. The behaviour
      * is undefined if there is not a single most popular product.
@@ -85,6 +233,16 @@ public interface IShop {
      */
     IProduct getMostPopular() throws ProductNotRegisteredException;
 
+    /**
+     * Gets the products that have been bought the greatest number of times, most bought first.
+     * If there are fewer products in the shop than requested, all of them are returned.
+     *
+     * @param count the maximum number of products to return
+     * @return the best selling products
+     * @throws IllegalArgumentException if the count is negative
+     */
+    List<IProduct> getTopSelling(int count);
+
     /**
      * Retrieves the {@link IProduct} with the specified bar code.
      * This method is added for the extension.
@@ -95,6 +253,14 @@ public interface IShop {
      */
     IProduct getProduct(String barCode) throws ProductNotRegisteredException;
 
+    /**
+     * Retrieves the {@link IProduct} with the specified bar code, without throwing an exception if it is missing.
+     *
+     * @param barCode the bar code of the product to retrieve
+     * @return the product with that bar code, or null if no such product is found
+     */
+    IProduct findProduct(String barCode);
+
     /**
      * Sets the price of the {@link IProduct} with the specified bar code.
      *
@@ -113,11 +279,39 @@ public interface IShop {
      */
     int getPriceOf(String barCode) throws ProductNotRegisteredException;
 
+    /**
+     * Gets the price of the {@link IProduct} with the specified bar code,
+     * without throwing an exception if it is missing.
+     *
+     * @param barCode the bar code of the product
+     * @return the price of the product, or {@link IShop#NOT_REGISTERED} if no product with that bar code is found
+     */
+    int findPriceOf(String barCode);
+
     /**
      * Calculates and returns the total shop revenue from all sales.
      *
      * @return the shop revenue
+     * @throws ArithmeticException if the revenue is too large to be returned as an int
      */
     int getRevenue();
 
+    /**
+     * Calculates and returns the total shop revenue from all sales, as a 64-bit value.
+     * Use this instead of {@link IShop#getRevenue()} when the revenue may exceed {@link Integer#MAX_VALUE}.
+     *
+     * @return the shop revenue
+     */
+    long getRevenueAsLong();
+
+    /**
+     * Gets the revenue from sales of the product with the specified bar code.
+     * Each unit is counted at the price the product had when it was bought.
+     *
+     * @param barCode the bar code of the product
+     * @return the revenue from the product
+     * @throws ProductNotRegisteredException when the no product with that bar code is found
+     */
+    long getRevenueOf(String barCode) throws ProductNotRegisteredException;
+
 }
@@ -28,11 +28,28 @@ public interface IStockRecord {
      */
     int getNumberOfSales();
 
+    /**
+     * Returns the total amount earned from purchases of this product,
+     * each unit counted at the price it had when it was bought.
+     *
+     * @return the revenue from the product
+     */
+    long getRevenue();
+
     /**
      * Adds stock for the product.
      */
     void addStock();
 
+    /**
+     * Adds the specified amount of stock for the product in one step.
+     * The stock count stops increasing at {@link Integer#MAX_VALUE}.
+     *
+     * @param count the number of units to add
+     * @throws IllegalArgumentException when the count is negative
+     */
+    void addStock(int count);
+
     /**
      * Processes the purchase of this product from the stock.
      *
@@ -40,6 +57,16 @@ public interface IStockRecord {
      */
     void buyProduct() throws StockUnavailableException;
 
+    /**
+     * Processes the purchase of the specified number of units of this product in one step.
+     * Either all units are bought or none are.
+     *
+     * @param count the number of units to buy
+     * @throws StockUnavailableException when there are fewer units in stock than requested
+     * @throws IllegalArgumentException  when the count is negative
+     */
+    void buyProduct(int count) throws StockUnavailableException;
+
     /**
      * Sets the price of the {@link IProduct}.
      * This method is added for the extension.
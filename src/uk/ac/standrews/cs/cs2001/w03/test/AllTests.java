@@ -13,11 +13,17 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
         CustomerTest.class,
+        ConcurrentCustomerTest.class,
         OrderTest.class,
+        OrderBatchTest.class,
         FactoryTest.class,
         ProductTest.class,
         StockRecordTest.class,
-        ShopTest.class
+        AtomicStockRecordTest.class,
+        ShopTest.class,
+        ConcurrentShopTest.class,
+        ColumnarShopTest.class,
+        OffHeapShopTest.class
 })
 public class AllTests {
 }
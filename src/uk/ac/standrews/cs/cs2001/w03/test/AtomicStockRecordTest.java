@@ -0,0 +1,143 @@
+package uk.ac.standrews.cs.cs2001.w03.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.impl.AtomicStockRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test class for the {@link AtomicStockRecord} class.
+ * All tests of {@link StockRecordTest} are run against an {@link AtomicStockRecord},
+ * followed by tests which update the record from several threads at once.
+ *
+ * @author 150009974
+ * @version 1.0
+ */
+public class AtomicStockRecordTest extends StockRecordTest {
+
+    /**
+     * The number of threads used in the concurrent test methods.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The number of purchases each thread attempts in the concurrent test methods.
+     */
+    private static final int PURCHASES_PER_THREAD = 5000;
+
+    /**
+     * Resets the {@link StockRecordTest#stockRecord} to a new {@link AtomicStockRecord} before each test method.
+     */
+    @Before
+    @Override
+    public void setUp() {
+        stockRecord = getFactory().makeAtomicStockRecord(product);
+    }
+
+    /**
+     * Test to see if the {@link AtomicStockRecord#addStock()} method increments the stock count by one,
+     * and stops at the maximum stock count.
+     * Unlike {@link StockRecordTest#addStockTest()}, the maximum is reached with a single bulk addition,
+     * as adding the units one by one takes minutes with compare-and-set.
+     */
+    @Test
+    @Override
+    public void addStockTest() {
+
+        assertEquals(0, stockRecord.getStockCount());
+
+        stockRecord.addStock();
+        assertEquals(1, stockRecord.getStockCount());
+
+        stockRecord.addStock(Integer.MAX_VALUE - 1);
+        assertEquals(Integer.MAX_VALUE, stockRecord.getStockCount());
+
+        stockRecord.addStock();
+        assertEquals(Integer.MAX_VALUE, stockRecord.getStockCount());
+
+    }
+
+    /**
+     * Test to see if the {@link AtomicStockRecord#buyProduct()} method reduces the stock count
+     * and increases the number of sales when stock is available, and that the number of sales stops at the maximum.
+     * Unlike {@link StockRecordTest#buyProductAvailable()}, the maximum is reached with a single bulk purchase.
+     */
+    @Test
+    @Override
+    public void buyProductAvailable() {
+
+        assertEquals(0, stockRecord.getNumberOfSales());
+
+        stockRecord.addStock();
+
+        try {
+            stockRecord.buyProduct();
+            assertEquals(1, stockRecord.getNumberOfSales());
+            assertEquals(0, stockRecord.getStockCount());
+
+            stockRecord.addStock(Integer.MAX_VALUE - 1);
+            stockRecord.buyProduct(Integer.MAX_VALUE - 1);
+            assertEquals(Integer.MAX_VALUE, stockRecord.getNumberOfSales());
+
+            stockRecord.addStock();
+            stockRecord.buyProduct();
+            assertEquals(Integer.MAX_VALUE, stockRecord.getNumberOfSales());
+            assertEquals(0, stockRecord.getStockCount());
+        }
+        catch (StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that when many threads buy the product at once, exactly the stocked amount is sold,
+     * the stock never drops below zero and no sales are lost.
+     */
+    @Test
+    public void buyProductConcurrently() {
+
+        int stock = THREADS * PURCHASES_PER_THREAD / 2;
+        stockRecord.addStock(stock);
+
+        AtomicInteger bought = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < PURCHASES_PER_THREAD; j++) {
+                    try {
+                        stockRecord.buyProduct();
+                        bought.incrementAndGet();
+                    }
+                    catch (StockUnavailableException e) {
+                        //Expected once the stock runs out.
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        catch (InterruptedException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        assertEquals(stock, bought.get());
+        assertEquals(0, stockRecord.getStockCount());
+        assertEquals(stock, stockRecord.getNumberOfSales());
+
+    }
+
+}
@@ -0,0 +1,184 @@
+package uk.ac.standrews.cs.cs2001.w03.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.impl.ColumnarShop;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test class for the {@link ColumnarShop} class.
+ * All tests of {@link ShopTest} are run against a {@link ColumnarShop},
+ * followed by tests in which products are unregistered and their slots are reused.
+ *
+ * @author 150009974
+ * @version 1.0
+ */
+public class ColumnarShopTest extends ShopTest {
+
+    /**
+     * The number of products used in the test methods, which is enough for the arrays to fill up several times.
+     */
+    private static final int PRODUCTS = 100;
+
+    /**
+     * Resets the {@link ShopTest#shop} to a new {@link ColumnarShop} before each test.
+     */
+    @Before
+    @Override
+    public void setUp() {
+        shop = getFactory().makeColumnarShop();
+    }
+
+    /**
+     * Registers {@link ColumnarShopTest#PRODUCTS} products, each with as much stock as its number.
+     *
+     * @param prefix the start of the bar code of each product, which is followed by its number
+     * @return the products, in the order they were registered
+     */
+    private List<IProduct> registerProducts(String prefix) {
+
+        List<IProduct> products = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < PRODUCTS; i++) {
+                IProduct product = getFactory().makeProduct(prefix + i, null);
+                shop.registerProduct(product);
+                shop.addStock(product.getBarCode(), i);
+                products.add(product);
+            }
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        return products;
+
+    }
+
+    /**
+     * Test to see that the products left after others are unregistered keep their stock, sales and ranking
+     * when new products are registered in their place.
+     */
+    @Test
+    public void registerAfterUnregistering() {
+
+        List<IProduct> first = registerProducts("a");
+
+        try {
+
+            //Leave one product in four, so that the empty slots are filled rather than the arrays made larger.
+            for (int i = 0; i < PRODUCTS; i++) {
+                if (i % 4 != 1) {
+                    shop.unregisterProduct(first.get(i));
+                }
+            }
+
+            shop.buyProduct("a" + 49, 1);
+            shop.buyProduct("a" + 53, 1);
+
+            List<IProduct> second = registerProducts("b");
+
+            assertEquals(PRODUCTS + PRODUCTS / 4, shop.getNumberOfProducts());
+            assertEquals(48, shop.getStockCount("a" + 49));
+            assertEquals(1, shop.getNumberOfSales("a" + 53));
+            assertEquals(IShop.NOT_REGISTERED, shop.findStockCount("a" + 50));
+            assertEquals(42, shop.getStockCount("b" + 42));
+
+            int expectedStock = 0;
+            for (int i = 0; i < PRODUCTS; i++) {
+                expectedStock += i + ((i % 4 == 1) ? i : 0);
+            }
+            assertEquals(expectedStock - 2, shop.getTotalStockCount());
+
+            //Products with the same sales keep the order in which they were registered.
+            assertEquals(first.get(49), shop.getMostPopular());
+            assertEquals(first.get(1), shop.getTopSelling(3).get(2));
+
+            shop.buyProduct("b" + 99, 2);
+            assertEquals(second.get(99), shop.getMostPopular());
+
+        }
+        catch (ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that a reservation made before products are unregistered and others registered
+     * still holds and releases the units of its own product.
+     */
+    @Test
+    public void reservationKeptWhileRegistering() {
+
+        List<IProduct> first = registerProducts("a");
+
+        try {
+
+            long reservation = shop.reserve("a" + 99, 9, IShop.NO_RESERVATION);
+
+            for (int i = 0; i < PRODUCTS - 1; i++) {
+                shop.unregisterProduct(first.get(i));
+            }
+            registerProducts("b");
+
+            assertEquals(90, shop.getAvailableCount("a" + 99));
+            assertEquals(99, shop.getStockCount("a" + 99));
+
+            shop.releaseReservation(reservation);
+            assertEquals(99, shop.getAvailableCount("a" + 99));
+            assertEquals(9, shop.getAvailableCount("b" + 9));
+
+        }
+        catch (ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that releasing a reservation of an unregistered product, after the products have been moved
+     * into its slot, does not give units to the product that took the slot.
+     */
+    @Test
+    public void reservationOfUnregisteredProductReleased() {
+
+        List<IProduct> first = registerProducts("a");
+
+        try {
+
+            long stale = shop.reserve("a" + 10, 5, IShop.NO_RESERVATION);
+            long reservation = shop.reserve("a" + 99, 9, IShop.NO_RESERVATION);
+
+            for (int i = 0; i < PRODUCTS - 1; i++) {
+                shop.unregisterProduct(first.get(i));
+            }
+            registerProducts("b");
+            shop.reserve("b" + 9, 4, IShop.NO_RESERVATION);
+
+            shop.releaseReservation(stale);
+            assertEquals(5, shop.getAvailableCount("b" + 9));
+            assertEquals(9, shop.getStockCount("b" + 9));
+
+            shop.releaseReservation(reservation);
+            assertEquals(99, shop.getAvailableCount("a" + 99));
+            assertEquals(99 + PRODUCTS * (PRODUCTS - 1) / 2, shop.getTotalStockCount());
+
+        }
+        catch (ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+}
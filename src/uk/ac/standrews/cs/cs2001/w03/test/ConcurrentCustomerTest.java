@@ -0,0 +1,160 @@
+package uk.ac.standrews.cs.cs2001.w03.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
+import uk.ac.standrews.cs.cs2001.w03.common.NotEnoughMoneyException;
+import uk.ac.standrews.cs.cs2001.w03.common.OrderAlreadyCompleteException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.impl.ConcurrentCustomer;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test class for the {@link ConcurrentCustomer} class.
+ * All tests of {@link CustomerTest} are run against a {@link ConcurrentCustomer},
+ * followed by tests which complete the orders of the customer from several threads at once.
+ *
+ * @author 150009974
+ * @version 1.0
+ */
+public class ConcurrentCustomerTest extends CustomerTest {
+
+    /**
+     * The number of threads used in the concurrent test methods.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The number of orders made in the concurrent test methods.
+     */
+    private static final int ORDERS = 400;
+
+    /**
+     * The bar code of the product ordered in the concurrent test methods.
+     */
+    private static final String BAR_CODE = "1111";
+
+    /**
+     * Resets the {@link CustomerTest#customer} to a new {@link ConcurrentCustomer} before each test.
+     */
+    @Before
+    @Override
+    public void setUp() {
+        customer = getFactory().makeConcurrentCustomer();
+    }
+
+    /**
+     * Runs the same task on {@link ConcurrentCustomerTest#THREADS} threads and waits for all of them to finish.
+     *
+     * @param task the task to run, given the number of its thread
+     */
+    private static void runOnThreads(IntConsumer task) {
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int number = i;
+            Thread thread = new Thread(() -> task.accept(number));
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        catch (InterruptedException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Makes a concurrent shop stocking one product at price 1,
+     * and {@link ConcurrentCustomerTest#ORDERS} orders of one unit of it from the customer.
+     *
+     * @return the shop
+     */
+    private IShop makeOrders() {
+
+        IShop shop = getFactory().makeConcurrentShop();
+
+        try {
+
+            shop.registerProduct(getFactory().makeProduct(BAR_CODE, null));
+            shop.addStock(BAR_CODE, ORDERS);
+
+            for (int i = 0; i < ORDERS; i++) {
+                IOrder order = customer.createOrder(shop);
+                order.addItem(BAR_CODE);
+                order.increaseQuantityOf(BAR_CODE);
+            }
+
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        return shop;
+
+    }
+
+    /**
+     * Test to see that the customer never spends more than they have,
+     * when every thread tries to complete every order.
+     */
+    @Test
+    public void completeOrderConcurrently() {
+
+        IShop shop = makeOrders();
+        customer.setMoney(ORDERS / 2);
+
+        runOnThreads(number -> {
+            for (int i = 0; i < ORDERS; i++) {
+                try {
+                    customer.completeOrder((i + number * ORDERS / THREADS) % ORDERS);
+                }
+                catch (OrderAlreadyCompleteException | NotEnoughMoneyException e) {
+                    //Expected when another thread got there first, or the money has run out.
+                }
+                catch (StockUnavailableException | ProductNotRegisteredException e) {
+                    fail(NOT_EXPECTED);
+                }
+            }
+        });
+
+        assertEquals(0, customer.getMoney());
+        assertEquals(ORDERS / 2, customer.getNumberOfCompletedOrders());
+        assertEquals(ORDERS / 2, shop.getRevenue());
+        assertEquals(ORDERS / 2, shop.getTotalNumberOfSales());
+
+    }
+
+    /**
+     * Test to see that orders are not completed twice when several threads complete all incomplete orders at once.
+     */
+    @Test
+    public void completeAllIncompleteOrdersConcurrently() {
+
+        IShop shop = makeOrders();
+        customer.setMoney(ORDERS * 2);
+
+        runOnThreads(number -> customer.completeAllIncompleteOrders());
+
+        assertEquals(ORDERS, customer.getNumberOfCompletedOrders());
+        assertEquals(ORDERS, customer.getMoney());
+        assertEquals(ORDERS, shop.getRevenue());
+        assertEquals(0, shop.getTotalStockCount());
+
+    }
+
+}
@@ -0,0 +1,356 @@
+package uk.ac.standrews.cs.cs2001.w03.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.impl.ConcurrentShop;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test class for the {@link ConcurrentShop} class.
+ * All tests of {@link ShopTest} are run against a {@link ConcurrentShop},
+ * followed by tests which use the shop from several threads at once.
+ *
+ * @author 150009974
+ * @version 1.0
+ */
+public class ConcurrentShopTest extends ShopTest {
+
+    /**
+     * The number of threads used in the concurrent test methods.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * The number of operations each thread performs in the concurrent test methods.
+     */
+    private static final int OPERATIONS_PER_THREAD = 2000;
+
+    /**
+     * Resets the {@link ShopTest#shop} to a new {@link ConcurrentShop} before each test.
+     */
+    @Before
+    @Override
+    public void setUp() {
+        shop = getFactory().makeConcurrentShop();
+    }
+
+    /**
+     * Runs the same task on {@link ConcurrentShopTest#THREADS} threads and waits for all of them to finish.
+     *
+     * @param task the task to run
+     */
+    private static void runOnThreads(Runnable task) {
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(task);
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        catch (InterruptedException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that no sales or revenue are lost when many threads buy the same products at once,
+     * and that the stock never drops below zero.
+     */
+    @Test
+    public void buyProductConcurrently() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, "p1");
+        IProduct product2 = getFactory().makeProduct(barCode2, "p2");
+        int stock = THREADS * OPERATIONS_PER_THREAD / 2;
+
+        try {
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.setPriceOf(barCode1, 2);
+            shop.setPriceOf(barCode2, 3);
+            shop.addStock(barCode1, stock);
+            shop.addStock(barCode2, stock);
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        AtomicInteger unavailable = new AtomicInteger();
+        runOnThreads(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                try {
+                    shop.buyProduct((i % 2 == 0) ? barCode1 : barCode2);
+                }
+                catch (StockUnavailableException e) {
+                    unavailable.incrementAndGet();
+                }
+                catch (ProductNotRegisteredException e) {
+                    fail(NOT_EXPECTED);
+                }
+            }
+        });
+
+        try {
+            assertEquals(0, unavailable.get());
+            assertEquals(0, shop.getStockCount(barCode1));
+            assertEquals(0, shop.getStockCount(barCode2));
+            assertEquals(stock, shop.getNumberOfSales(barCode1));
+            assertEquals(stock, shop.getNumberOfSales(barCode2));
+            assertEquals(0, shop.getTotalStockCount());
+            assertEquals(stock * 2, shop.getRevenueOf(barCode1));
+            assertEquals(stock * 3, shop.getRevenueOf(barCode2));
+            assertEquals(stock * 2 + stock * 3, shop.getRevenue());
+            assertEquals(stock * 2, shop.getTotalNumberOfSales());
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that when more units are bought than there are in stock,
+     * exactly the stocked amount is sold and the rest of the attempts fail.
+     */
+    @Test
+    public void buyProductConcurrentlyNotEnoughStock() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "p");
+        int stock = OPERATIONS_PER_THREAD;
+
+        try {
+            shop.registerProduct(product);
+            shop.addStock(barCode, stock);
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        AtomicInteger unavailable = new AtomicInteger();
+        runOnThreads(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                try {
+                    shop.buyProduct(barCode);
+                }
+                catch (StockUnavailableException e) {
+                    unavailable.incrementAndGet();
+                }
+                catch (ProductNotRegisteredException e) {
+                    fail(NOT_EXPECTED);
+                }
+            }
+        });
+
+        try {
+            assertEquals(THREADS * OPERATIONS_PER_THREAD - stock, unavailable.get());
+            assertEquals(0, shop.getStockCount(barCode));
+            assertEquals(stock, shop.getNumberOfSales(barCode));
+            assertEquals(stock * shop.getPriceOf(barCode), shop.getRevenue());
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+
+    /**
+     * Test to see that multi-line purchases made from many threads at once are all-or-nothing:
+     * every unit of the shared product is matched by exactly one unit of one of the other products,
+     * even once the stock runs out.
+     */
+    @Test
+    public void buyProductsConcurrently() {
+
+        String shared = "1-2", barCode1 = "3-4", barCode2 = "5-6";
+        int sharedStock = THREADS * OPERATIONS_PER_THREAD / 4, otherStock = sharedStock / 3;
+
+        try {
+            for (String barCode : new String[]{shared, barCode1, barCode2}) {
+                shop.registerProduct(getFactory().makeProduct(barCode, "desc"));
+            }
+            shop.addStock(shared, sharedStock);
+            shop.addStock(barCode1, otherStock);
+            shop.addStock(barCode2, otherStock);
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        Map<String, Integer> quantities1 = new LinkedHashMap<>();
+        quantities1.put(shared, 1);
+        quantities1.put(barCode1, 1);
+        Map<String, Integer> quantities2 = new LinkedHashMap<>();
+        quantities2.put(shared, 1);
+        quantities2.put(barCode2, 1);
+
+        runOnThreads(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                try {
+                    shop.buyProducts((i % 2 == 0) ? quantities1 : quantities2);
+                }
+                catch (StockUnavailableException e) {
+                    //Expected once one of the products runs out.
+                }
+                catch (ProductNotRegisteredException e) {
+                    fail(NOT_EXPECTED);
+                }
+            }
+        });
+
+        try {
+
+            int sharedSales = shop.getNumberOfSales(shared);
+            assertEquals(sharedSales, shop.getNumberOfSales(barCode1) + shop.getNumberOfSales(barCode2));
+            assertEquals(sharedStock - sharedSales, shop.getStockCount(shared));
+            assertEquals(otherStock - shop.getNumberOfSales(barCode1), shop.getStockCount(barCode1));
+            assertEquals(otherStock - shop.getNumberOfSales(barCode2), shop.getStockCount(barCode2));
+            assertEquals(sharedSales * 2, shop.getTotalNumberOfSales());
+            assertEquals(sharedSales * 2, shop.getRevenue());
+            assertEquals(sharedStock + otherStock * 2 - sharedSales * 2, shop.getTotalStockCount());
+
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+
+    /**
+     * Test to see that reserved units are never sold twice while other threads buy without reservations.
+     */
+    @Test
+    public void reserveConcurrently() {
+
+        String barCode = "1-2";
+        int stock = THREADS * OPERATIONS_PER_THREAD / 2;
+
+        try {
+            shop.registerProduct(getFactory().makeProduct(barCode, "desc"));
+            shop.addStock(barCode, stock);
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(barCode, 1);
+
+        runOnThreads(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                try {
+                    if (i % 2 == 0) {
+                        long reservation = shop.reserve(barCode, 1, IShop.NO_RESERVATION);
+                        shop.buyProducts(quantities, new long[]{reservation});
+                    }
+                    else {
+                        shop.buyProduct(barCode);
+                    }
+                }
+                catch (StockUnavailableException e) {
+                    //Expected once the stock runs out.
+                }
+                catch (ProductNotRegisteredException e) {
+                    fail(NOT_EXPECTED);
+                }
+            }
+        });
+
+        try {
+            assertEquals(0, shop.getStockCount(barCode));
+            assertEquals(0, shop.getAvailableCount(barCode));
+            assertEquals(stock, shop.getNumberOfSales(barCode));
+            assertEquals(0, shop.getTotalStockCount());
+            assertEquals(stock, shop.getRevenue());
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that held units are neither lost nor counted twice when many threads replace and use
+     * their reservations at once, including purchases which fail and keep their reservation.
+     */
+    @Test
+    public void buyProductsWithReservationsConcurrently() {
+
+        String barCode = "1-2";
+        int stock = THREADS * OPERATIONS_PER_THREAD * 2;
+        int sold = THREADS * OPERATIONS_PER_THREAD;
+
+        try {
+            shop.registerProduct(getFactory().makeProduct(barCode, "desc"));
+            shop.addStock(barCode, stock);
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        Map<String, Integer> one = new LinkedHashMap<>();
+        one.put(barCode, 1);
+        Map<String, Integer> tooMany = new LinkedHashMap<>();
+        tooMany.put(barCode, stock + 1);
+
+        runOnThreads(() -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                try {
+
+                    long reservation = shop.reserve(barCode, 1, IShop.NO_RESERVATION);
+                    reservation = shop.reserve(barCode, 2, reservation);
+                    reservation = shop.reserve(barCode, 1, reservation);
+
+                    try {
+                        shop.buyProducts(tooMany, new long[]{reservation});
+                    }
+                    catch (StockUnavailableException e) {
+                        //Expected, and the reservation is kept for the next purchase.
+                    }
+
+                    shop.buyProducts(one, new long[]{reservation});
+
+                }
+                catch (StockUnavailableException | ProductNotRegisteredException e) {
+                    fail(NOT_EXPECTED);
+                }
+            }
+        });
+
+        try {
+            assertEquals(stock - sold, shop.getStockCount(barCode));
+            assertEquals(stock - sold, shop.getAvailableCount(barCode));
+            assertEquals(sold, shop.getNumberOfSales(barCode));
+            assertEquals(stock - sold, shop.getTotalStockCount());
+            assertEquals(sold, shop.getRevenue());
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+}
@@ -10,6 +10,13 @@ import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 /**
@@ -23,7 +30,7 @@ public class CustomerTest extends AbstractFactoryClient {
     /**
      * The {@link ICustomer} instance used in the test methods.
      */
-    private ICustomer customer;
+    protected ICustomer customer;
 
     /**
      * Resets the {@link CustomerTest#customer} before each test.
@@ -342,4 +349,587 @@ public class CustomerTest extends AbstractFactoryClient {
 
     }
 
+
+    @Test
+    public void setAndGetMoneyAsLongTest() {
+
+        long money = 5L * Integer.MAX_VALUE;
+        customer.setMoney(money);
+        assertEquals(money, customer.getMoneyAsLong());
+
+        customer.setMoney(-money);
+        assertEquals(Customer.DEFAULT_MONEY, customer.getMoneyAsLong());
+        assertEquals(Customer.DEFAULT_MONEY, customer.getMoney());
+
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void getMoneyAboveIntRange() {
+
+        customer.setMoney(Integer.MAX_VALUE + 1L);
+        customer.getMoney();
+
+    }
+
+    @Test
+    public void completeOrderAboveIntRange() {
+
+        IShop shop = getFactory().makeShop();
+        String barCode = "1111";
+        IProduct product = getFactory().makeProduct(barCode, null);
+        long money = 3L * Integer.MAX_VALUE;
+
+        try {
+
+            shop.registerProduct(product);
+            shop.setPriceOf(barCode, Integer.MAX_VALUE);
+            shop.addStock(barCode, 2);
+
+            customer.setMoney(money);
+            IOrder order = customer.createOrder(shop);
+            order.addItem(barCode);
+            order.increaseQuantityOf(barCode);
+            order.increaseQuantityOf(barCode);
+
+            customer.completeOrder(0);
+            assertEquals(money - 2L * Integer.MAX_VALUE, customer.getMoneyAsLong());
+            assertEquals(2L * Integer.MAX_VALUE, shop.getRevenueAsLong());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | OrderAlreadyCompleteException | StockUnavailableException | NotEnoughMoneyException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+
+    @Test
+    public void getNumberOfOrdersCompletedDirectly() {
+
+        IShop shop = getFactory().makeShop();
+
+        IOrder order1 = customer.createOrder(shop);
+        customer.createOrder(shop);
+        IOrder order3 = customer.createOrder(shop);
+
+        try {
+
+            order1.complete();
+            assertEquals(1, customer.getNumberOfCompletedOrders());
+            assertEquals(2, customer.getNumberOfIncompleteOrders());
+
+            customer.completeOrder(1);
+            order3.complete();
+            assertEquals(3, customer.getNumberOfCompletedOrders());
+            assertEquals(0, customer.getNumberOfIncompleteOrders());
+
+        }
+        catch (OrderAlreadyCompleteException | NotEnoughMoneyException | StockUnavailableException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    @Test
+    public void getNumberOfOrdersAfterFailedCompletion() {
+
+        IShop shop = getFactory().makeShop();
+        IOrder order = customer.createOrder(shop);
+
+        try {
+            order.complete();
+        }
+        catch (OrderAlreadyCompleteException | StockUnavailableException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            order.complete();
+            fail("OrderAlreadyCompleteException was expected!");
+        }
+        catch (OrderAlreadyCompleteException e) {
+            assertEquals(1, customer.getNumberOfCompletedOrders());
+            assertEquals(0, customer.getNumberOfIncompleteOrders());
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+
+    @Test
+    public void completeOrderFailureKeepsMoney() {
+
+        IShop shop = getFactory().makeShop();
+        String barCode = "1111";
+        IProduct product = getFactory().makeProduct(barCode, null);
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode);
+
+            IOrder order = customer.createOrder(shop);
+            //Let the reservation of the order expire, so that its stock can be bought from under it.
+            shop.setReservationTimeout(0);
+            order.addItem(barCode);
+            order.increaseQuantityOf(barCode);
+
+            waitForReservationsToExpire();
+            shop.buyProduct(barCode);
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | OrderAlreadyCompleteException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            customer.completeOrder(0);
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            assertEquals(Customer.DEFAULT_MONEY, customer.getMoney());
+            assertEquals(0, customer.getNumberOfCompletedOrders());
+        }
+        catch (ProductNotRegisteredException | OrderAlreadyCompleteException | NotEnoughMoneyException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Waits long enough for reservations made with a timeout of 0 to expire.
+     */
+    private static void waitForReservationsToExpire() {
+
+        try {
+            Thread.sleep(50);
+        }
+        catch (InterruptedException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+
+    /**
+     * Creates an order from the customer to a shop, with the given quantity of a product.
+     *
+     * @param shop     the shop, in which the product must be registered and stocked
+     * @param barCode  the bar code of the product
+     * @param quantity the quantity to order
+     * @return the order
+     */
+    private IOrder createOrderOf(IShop shop, String barCode, int quantity) {
+
+        IOrder order = customer.createOrder(shop);
+
+        try {
+            order.addItem(barCode);
+            for (int i = 0; i < quantity; i++) {
+                order.increaseQuantityOf(barCode);
+            }
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        return order;
+
+    }
+
+    /**
+     * Creates a shop with a single product in stock, at the given price.
+     *
+     * @param barCode the bar code of the product
+     * @param stock   the number of units in stock
+     * @param price   the price of the product
+     * @return the shop
+     */
+    private IShop createShopWith(String barCode, int stock, int price) {
+
+        IShop shop = getFactory().makeShop();
+
+        try {
+            shop.registerProduct(getFactory().makeProduct(barCode, null));
+            shop.addStock(barCode, stock);
+            shop.setPriceOf(barCode, price);
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        return shop;
+
+    }
+
+    @Test
+    public void completeOrdersSuccessfully() {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        createOrderOf(shop, "1111", 2);
+        createOrderOf(shop, "1111", 1);
+        createOrderOf(shop, "1111", 3);
+
+        Map<IOrder, AbstractShopException> failures = customer.completeOrders(0, 2);
+
+        assertTrue(failures.isEmpty());
+        assertEquals(Customer.DEFAULT_MONEY - 25, customer.getMoney());
+        assertEquals(2, customer.getNumberOfCompletedOrders());
+        assertTrue(customer.getOrder(0).isComplete());
+        assertFalse(customer.getOrder(1).isComplete());
+        assertEquals(5, shop.getTotalStockCount());
+        assertEquals(25, shop.getRevenue());
+
+    }
+
+    /**
+     * Test to see that orders are paid for in the order of their indices until the money runs out,
+     * and that only the completed orders are charged.
+     */
+    @Test
+    public void completeOrdersNotEnoughMoney() {
+
+        IShop shop = createShopWith("1111", 10, 30);
+        IOrder first = createOrderOf(shop, "1111", 2);
+        IOrder second = createOrderOf(shop, "1111", 2);
+        IOrder third = createOrderOf(shop, "1111", 1);
+
+        Map<IOrder, AbstractShopException> failures = customer.completeOrders(0, 1, 2);
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(second) instanceof NotEnoughMoneyException);
+        assertTrue(first.isComplete());
+        assertFalse(second.isComplete());
+        assertTrue(third.isComplete());
+        assertEquals(Customer.DEFAULT_MONEY - 90, customer.getMoney());
+
+    }
+
+    /**
+     * Test to see that an order which fails in the shop is not charged for, and does not stop the others.
+     */
+    @Test
+    public void completeOrdersUnregisteredProduct() {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        IShop otherShop = createShopWith("2222", 10, 5);
+        IOrder order = createOrderOf(shop, "1111", 2);
+        IOrder otherOrder = createOrderOf(otherShop, "2222", 3);
+
+        try {
+            otherShop.unregisterProduct(otherShop.getProduct("2222"));
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        Map<IOrder, AbstractShopException> failures = customer.completeAllIncompleteOrders();
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(otherOrder) instanceof ProductNotRegisteredException);
+        assertTrue(order.isComplete());
+        assertEquals(Customer.DEFAULT_MONEY - 10, customer.getMoney());
+        assertEquals(1, customer.getNumberOfIncompleteOrders());
+
+    }
+
+    @Test
+    public void completeOrdersAlreadyComplete() {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        IOrder order = createOrderOf(shop, "1111", 2);
+
+        assertTrue(customer.completeOrders(0, 0).isEmpty());
+        assertEquals(Customer.DEFAULT_MONEY - 10, customer.getMoney());
+
+        Map<IOrder, AbstractShopException> failures = customer.completeOrders(0);
+        assertTrue(failures.get(order) instanceof OrderAlreadyCompleteException);
+        assertEquals(Customer.DEFAULT_MONEY - 10, customer.getMoney());
+
+    }
+
+    /**
+     * Test to see that a bad index stops the whole call before anything is completed.
+     */
+    @Test
+    public void completeOrdersIndexOutOfBounds() {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        createOrderOf(shop, "1111", 2);
+
+        try {
+            customer.completeOrders(0, 1);
+            fail("IndexOutOfBoundsException was expected!");
+        }
+        catch (IndexOutOfBoundsException e) {
+            assertEquals(0, customer.getNumberOfCompletedOrders());
+            assertEquals(Customer.DEFAULT_MONEY, customer.getMoney());
+        }
+
+    }
+
+    @Test
+    public void completeAllIncompleteOrdersSuccessfully() {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        createOrderOf(shop, "1111", 1);
+        createOrderOf(shop, "1111", 2);
+
+        try {
+            customer.completeOrder(0);
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException | NotEnoughMoneyException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        assertTrue(customer.completeAllIncompleteOrders().isEmpty());
+        assertEquals(2, customer.getNumberOfCompletedOrders());
+        assertEquals(0, customer.getNumberOfIncompleteOrders());
+        assertEquals(Customer.DEFAULT_MONEY - 15, customer.getMoney());
+
+    }
+
+
+    @Test
+    public void getOrdersFromTest() {
+
+        IShop shop1 = getFactory().makeShop();
+        IShop shop2 = getFactory().makeShop();
+
+        IOrder order1 = customer.createOrder(shop1);
+        IOrder order2 = customer.createOrder(shop2);
+        List<IOrder> fromShop1 = customer.getOrdersFrom(shop1);
+        IOrder order3 = customer.createOrder(shop1);
+
+        //The view follows orders created after it was returned.
+        assertEquals(Arrays.asList(order1, order3), fromShop1);
+        assertEquals(Arrays.asList(order2), customer.getOrdersFrom(shop2));
+        assertTrue(customer.getOrdersFrom(getFactory().makeShop()).isEmpty());
+
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getOrdersFromReadOnly() {
+
+        IShop shop = getFactory().makeShop();
+        customer.createOrder(shop);
+
+        customer.getOrdersFrom(shop).clear();
+
+    }
+
+    /**
+     * Test to see that orders move from the incomplete to the completed view as they are completed,
+     * however they are completed, and that both views keep the order in which the orders were created.
+     */
+    @Test
+    public void getIncompleteAndCompletedOrdersTest() {
+
+        IShop shop = createShopWith("1111", 10, 1);
+        IOrder order1 = createOrderOf(shop, "1111", 1);
+        IOrder order2 = createOrderOf(shop, "1111", 1);
+        IOrder order3 = createOrderOf(shop, "1111", 1);
+
+        Collection<IOrder> incomplete = customer.getIncompleteOrders();
+        Collection<IOrder> completed = customer.getCompletedOrders();
+        assertEquals(Arrays.asList(order1, order2, order3), Arrays.asList(incomplete.toArray()));
+        assertTrue(completed.isEmpty());
+
+        try {
+            order3.complete();
+            customer.completeOrder(0);
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException | NotEnoughMoneyException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        assertEquals(Arrays.asList(order2), Arrays.asList(incomplete.toArray()));
+        assertEquals(Arrays.asList(order1, order3), Arrays.asList(completed.toArray()));
+        assertEquals(1, customer.getNumberOfIncompleteOrders());
+        assertEquals(2, customer.getNumberOfCompletedOrders());
+
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getIncompleteOrdersReadOnly() {
+
+        customer.createOrder(getFactory().makeShop());
+        customer.getIncompleteOrders().clear();
+
+    }
+
+    /**
+     * Creates an empty temporary file for archiving orders, which is deleted when the tests finish.
+     *
+     * @return the file
+     */
+    private File createArchiveFile() {
+
+        File file = null;
+
+        try {
+            file = File.createTempFile("orders", ".archive");
+            file.deleteOnExit();
+        }
+        catch (IOException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        return file;
+
+    }
+
+    /**
+     * Test to see that archived orders, both those completed before archiving is switched on and those after,
+     * read back as they were and stand in for the original orders in every view.
+     */
+    @Test
+    public void archiveCompletedOrdersTest() {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        createOrderOf(shop, "1111", 2);
+        createOrderOf(shop, "1111", 3);
+        IOrder incomplete = createOrderOf(shop, "1111", 1);
+
+        try {
+            customer.completeOrder(0);
+            customer.archiveCompletedOrders(createArchiveFile(), 1);
+            customer.completeOrder(1);
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException | NotEnoughMoneyException | IOException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        IOrder archived1 = customer.getOrder(0);
+        IOrder archived2 = customer.getOrder(1);
+
+        try {
+            assertTrue(archived1.isComplete());
+            assertEquals(2, archived1.getQuantityOf("1111"));
+            assertEquals(10, archived1.getTotalOrderCost());
+            assertEquals("1111", archived1.getItem("1111").getBarCode());
+            assertEquals(shop, archived1.getShop());
+
+            assertEquals(3, archived2.getTotalQuantity());
+            assertEquals(15, archived2.getCostOf("1111"));
+            assertEquals(1, archived2.getNumberOfItems());
+
+            //Read the first order again, after the second has taken its place in the cache.
+            assertEquals(2, archived1.getTotalQuantity());
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        assertEquals(Arrays.asList(archived1, archived2), Arrays.asList(customer.getCompletedOrders().toArray()));
+        assertEquals(Arrays.asList(archived1, archived2, incomplete), customer.getOrdersFrom(shop));
+        assertSame(incomplete, customer.getOrder(2));
+        assertEquals(2, customer.getNumberOfCompletedOrders());
+        assertEquals(Customer.DEFAULT_MONEY - 25, customer.getMoney());
+
+    }
+
+    @Test(expected = OrderAlreadyCompleteException.class)
+    public void archivedOrderCannotChange() throws OrderAlreadyCompleteException {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        createOrderOf(shop, "1111", 2);
+
+        try {
+            customer.archiveCompletedOrders(createArchiveFile(), 1);
+            customer.completeOrder(0);
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException | NotEnoughMoneyException | IOException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            customer.getOrder(0).increaseQuantityOf("1111");
+        }
+        catch (ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void archiveCompletedOrdersNegativeCacheSize() throws IOException {
+        customer.archiveCompletedOrders(createArchiveFile(), -1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void archiveCompletedOrdersTwice() throws IOException {
+
+        File file = createArchiveFile();
+        customer.archiveCompletedOrders(file, 1);
+        customer.archiveCompletedOrders(file, 1);
+
+    }
+
+    /**
+     * Test to see that archiving to another file moves the archived orders there,
+     * so they can still be read once the first file is gone.
+     */
+    @Test
+    public void archiveCompletedOrdersToAnotherFile() {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        createOrderOf(shop, "1111", 2);
+        createOrderOf(shop, "1111", 3);
+
+        try {
+
+            File first = createArchiveFile();
+            customer.completeOrder(0);
+            customer.archiveCompletedOrders(first, 0);
+            customer.archiveCompletedOrders(createArchiveFile(), 0);
+            assertTrue(first.delete());
+
+            customer.completeOrder(1);
+
+            assertEquals(2, customer.getOrder(0).getTotalQuantity());
+            assertEquals(15, customer.getOrder(1).getCostOf("1111"));
+            assertNull(customer.getArchiveFailure());
+
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException | NotEnoughMoneyException | IOException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that stopping archiving brings the archived orders back into memory,
+     * so they can still be read once the file is gone, and that orders completed afterwards are not archived.
+     */
+    @Test
+    public void stopArchivingCompletedOrdersTest() {
+
+        IShop shop = createShopWith("1111", 10, 5);
+        createOrderOf(shop, "1111", 2);
+        IOrder notArchived = createOrderOf(shop, "1111", 3);
+
+        try {
+
+            File file = createArchiveFile();
+            customer.archiveCompletedOrders(file, 0);
+            customer.completeOrder(0);
+            customer.stopArchivingCompletedOrders();
+            assertTrue(file.delete());
+
+            customer.completeOrder(1);
+
+            assertEquals(2, customer.getOrder(0).getQuantityOf("1111"));
+            assertSame(notArchived, customer.getOrder(1));
+            assertEquals(Arrays.asList(customer.getOrder(0), notArchived), customer.getOrdersFrom(shop));
+
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException | NotEnoughMoneyException | IOException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
 }
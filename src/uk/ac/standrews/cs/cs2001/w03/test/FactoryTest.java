@@ -5,12 +5,19 @@ import uk.ac.standrews.cs.cs2001.w03.common.AbstractFactoryClient;
 import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
 import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
 import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.impl.AtomicStockRecord;
+import uk.ac.standrews.cs.cs2001.w03.impl.ConcurrentCustomer;
+import uk.ac.standrews.cs.cs2001.w03.impl.ColumnarShop;
+import uk.ac.standrews.cs.cs2001.w03.impl.OffHeapShop;
+import uk.ac.standrews.cs.cs2001.w03.impl.ConcurrentShop;
 import uk.ac.standrews.cs.cs2001.w03.impl.Customer;
 import uk.ac.standrews.cs.cs2001.w03.impl.Factory;
+import uk.ac.standrews.cs.cs2001.w03.impl.OrderBatch;
 import uk.ac.standrews.cs.cs2001.w03.impl.Shop;
 import uk.ac.standrews.cs.cs2001.w03.impl.StockRecord;
 import uk.ac.standrews.cs.cs2001.w03.impl.Product;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.ICustomer;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrderBatch;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IStockRecord;
@@ -49,6 +56,90 @@ public class FactoryTest extends AbstractFactoryClient {
 
     }
 
+    /**
+     * Test to see if the {@link Factory#makeConcurrentShop()} method
+     * correctly creates a {@link ConcurrentShop} object.
+     * The object returned should not be null and it should be possible to call methods on it.
+     */
+    @Test
+    public void makeConcurrentShopTest() {
+
+        IShop shop = getFactory().makeConcurrentShop();
+        assertNotNull(shop);
+
+        IProduct product = getFactory().makeProduct("1-2", "desc");
+        try {
+            shop.registerProduct(product);
+            shop.unregisterProduct(product);
+        } catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see if the {@link Factory#makeColumnarShop()} method
+     * correctly creates a {@link ColumnarShop} object.
+     * The object returned should not be null and it should be possible to call methods on it.
+     */
+    @Test
+    public void makeColumnarShopTest() {
+
+        IShop shop = getFactory().makeColumnarShop();
+        assertNotNull(shop);
+
+        IProduct product = getFactory().makeProduct("1-2", "desc");
+        try {
+            shop.registerProduct(product);
+            shop.unregisterProduct(product);
+        } catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see if the {@link Factory#makeOffHeapShop()} method
+     * correctly creates a {@link OffHeapShop} object.
+     * The object returned should not be null and it should be possible to call methods on it.
+     */
+    @Test
+    public void makeOffHeapShopTest() {
+
+        IShop shop = getFactory().makeOffHeapShop();
+        assertNotNull(shop);
+
+        IProduct product = getFactory().makeProduct("1-2", "desc");
+        try {
+            shop.registerProduct(product);
+            shop.unregisterProduct(product);
+        } catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see if the {@link Factory#makeOffHeapShop(int)} method
+     * correctly creates a {@link OffHeapShop} object.
+     * The object returned should not be null and it should be possible to call methods on it.
+     */
+    @Test
+    public void makeBoundedOffHeapShopTest() {
+
+        IShop shop = getFactory().makeOffHeapShop(1);
+        assertNotNull(shop);
+
+        IProduct product = getFactory().makeProduct("1-2", "desc");
+        try {
+            shop.registerProduct(product);
+            shop.unregisterProduct(product);
+        } catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
     /**
      * Test to see if the {@link Factory#makeStockRecord(IProduct)} method
      * correctly creates a {@link StockRecord} object.
@@ -72,6 +163,29 @@ public class FactoryTest extends AbstractFactoryClient {
 
     }
 
+    /**
+     * Test to see if the {@link Factory#makeAtomicStockRecord(IProduct)} method
+     * correctly creates an {@link AtomicStockRecord} object.
+     * The object returned should not be null and it should be possible to call methods on it.
+     */
+    @Test
+    public void makeAtomicStockRecordSuccessfully() {
+
+        IProduct product = getFactory().makeProduct("1-2", "desc");
+        IStockRecord record = getFactory().makeAtomicStockRecord(product);
+
+        assertNotNull(record);
+        assertEquals(product, record.getProduct());
+
+        record.addStock();
+        try {
+            record.buyProduct();
+        } catch (StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
     /**
      * Test to see if the {@link Factory#makeStockRecord(IProduct)} method
      * correctly creates a {@link StockRecord} object when the passed {@link IProduct} is null.
@@ -137,4 +251,34 @@ public class FactoryTest extends AbstractFactoryClient {
 
     }
 
+
+    /**
+     * Test to see if the {@link Factory#makeOrderBatch()} method
+     * correctly creates an empty {@link OrderBatch} object.
+     */
+    @Test
+    public void makeOrderBatchTest() {
+
+        IOrderBatch batch = getFactory().makeOrderBatch();
+        assertNotNull(batch);
+        assertEquals(0, batch.getNumberOfOrders());
+        assertEquals(0, batch.complete().size());
+
+    }
+
+
+    /**
+     * Test to see if the {@link Factory#makeConcurrentCustomer()} method
+     * correctly creates a {@link ConcurrentCustomer} object.
+     */
+    @Test
+    public void makeConcurrentCustomerTest() {
+
+        ICustomer customer = getFactory().makeConcurrentCustomer();
+        assertNotNull(customer);
+        assertEquals(Customer.DEFAULT_MONEY, customer.getMoney());
+        assertEquals(0, customer.getTotalNumberOfOrders());
+
+    }
+
 }
@@ -0,0 +1,285 @@
+package uk.ac.standrews.cs.cs2001.w03.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.impl.OffHeapShop;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IStockRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test class for the {@link OffHeapShop} class.
+ * All tests of {@link ShopTest} are run against an {@link OffHeapShop},
+ * followed by tests of its stock record views, of a catalog large enough for its table to grow,
+ * and of a shop that cannot hold any more products.
+ *
+ * @author 150009974
+ * @version 1.0
+ */
+public class OffHeapShopTest extends ShopTest {
+
+    /**
+     * The number of products used in {@link OffHeapShopTest#manyProductsTest()},
+     * which is enough for the table and the descriptions to grow several times.
+     */
+    private static final int PRODUCTS = 5000;
+
+    /**
+     * The most products held by the shops in the tests of a full shop, which is enough for the table to grow.
+     */
+    private static final int MAXIMUM_NUMBER_OF_PRODUCTS = 3000;
+
+    /**
+     * Resets the {@link ShopTest#shop} to a new {@link OffHeapShop} before each test.
+     */
+    @Before
+    @Override
+    public void setUp() {
+        shop = getFactory().makeOffHeapShop();
+    }
+
+    /**
+     * Makes an EAN-13 bar code, by adding the check digit to twelve digits.
+     *
+     * @param number the number made into the first twelve digits
+     * @return the bar code
+     */
+    private static String ean13(int number) {
+
+        String digits = String.format("%012d", number);
+
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(i) - '0';
+            sum += (i % 2 == 0) ? digit : 3 * digit;
+        }
+
+        return digits + (10 - sum % 10) % 10;
+
+    }
+
+    /**
+     * Decides which products {@link OffHeapShopTest#manyProductsTest()} unregisters.
+     *
+     * @param i the number of the product
+     * @return true if the product is unregistered
+     */
+    private static boolean isUnregistered(int i) {
+        return (i % 2) == (i / 2) % 2;
+    }
+
+    /**
+     * Test to see that a stock record view reflects the changes made through the shop, and the shop those made through the view.
+     */
+    @Test
+    public void stockRecordViewTest() {
+
+        try {
+
+            shop.registerProduct(getFactory().makeProduct(ean13(1), "desc"));
+            shop.addStock(ean13(1), 10);
+
+            IStockRecord record = ((OffHeapShop) shop).getStockRecord(ean13(1));
+            assertEquals(getFactory().makeProduct(ean13(1), "desc"), record.getProduct());
+            assertEquals(10, record.getStockCount());
+
+            record.addStock(5);
+            record.setPrice(3);
+            record.buyProduct(2);
+
+            assertEquals(13, shop.getStockCount(ean13(1)));
+            assertEquals(13, shop.getTotalStockCount());
+            assertEquals(2, shop.getNumberOfSales(ean13(1)));
+            assertEquals(6, shop.getRevenueOf(ean13(1)));
+            assertEquals(6, shop.getRevenueAsLong());
+
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that units held by a reservation cannot be bought through a stock record view.
+     *
+     * @throws StockUnavailableException expected, as only one unit is not held
+     */
+    @Test(expected = StockUnavailableException.class)
+    public void stockRecordViewReserved() throws StockUnavailableException {
+
+        IStockRecord record = null;
+
+        try {
+            shop.registerProduct(getFactory().makeProduct(ean13(1), "desc"));
+            shop.addStock(ean13(1), 10);
+            shop.reserve(ean13(1), 9, IShop.NO_RESERVATION);
+            record = ((OffHeapShop) shop).getStockRecord(ean13(1));
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        record.buyProduct(2);
+
+    }
+
+    /**
+     * Test to see that a stock record view cannot be used once its product is unregistered,
+     * even if another product is registered with the same bar code.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void stockRecordViewAfterUnregistering() {
+
+        IProduct product = getFactory().makeProduct(ean13(2), "desc");
+        IStockRecord record = null;
+
+        try {
+            shop.registerProduct(product);
+            record = ((OffHeapShop) shop).getStockRecord(ean13(2));
+            shop.unregisterProduct(product);
+            shop.registerProduct(product);
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        record.getStockCount();
+
+    }
+
+    /**
+     * Test to see that the products left after many are registered and half of them unregistered
+     * keep their descriptions, stock, prices and sales.
+     * Half of the bar codes are EAN-13 codes, and half cannot be packed.
+     */
+    @Test
+    public void manyProductsTest() {
+
+        List<IProduct> products = new ArrayList<>();
+
+        try {
+
+            for (int i = 0; i < PRODUCTS; i++) {
+                String barCode = (i % 2 == 0) ? ean13(i) : "code-" + i;
+                IProduct product = getFactory().makeProduct(barCode, "description of product " + i);
+                shop.registerProduct(product);
+                shop.addStock(barCode, i);
+                shop.setPriceOf(barCode, i + 1);
+                products.add(product);
+            }
+
+            //Unregister half of the products, of both kinds, two in a row at a time.
+            for (int i = 0; i < PRODUCTS; i++) {
+                if (isUnregistered(i)) {
+                    shop.unregisterProduct(products.get(i));
+                }
+            }
+
+            //More products, to make the descriptions of the unregistered ones be left behind.
+            for (int i = PRODUCTS; i < 2 * PRODUCTS; i++) {
+                shop.registerProduct(getFactory().makeProduct(ean13(i), "description of product " + i));
+            }
+
+            assertEquals(PRODUCTS / 2 + PRODUCTS, shop.getNumberOfProducts());
+
+            int expectedStock = 0;
+            for (int i = 0; i < PRODUCTS; i++) {
+
+                IProduct product = products.get(i);
+                if (isUnregistered(i)) {
+                    assertNull(shop.findProduct(product.getBarCode()));
+                    continue;
+                }
+
+                assertEquals(product.getDescription(), shop.getProduct(product.getBarCode()).getDescription());
+                assertEquals(i, shop.getStockCount(product.getBarCode()));
+                assertEquals(i + 1, shop.getPriceOf(product.getBarCode()));
+                expectedStock += i;
+
+            }
+            assertEquals(expectedStock, shop.getTotalStockCount());
+
+            shop.buyProduct(products.get(PRODUCTS - 2).getBarCode(), 3);
+            assertEquals(products.get(PRODUCTS - 2), shop.getMostPopular());
+            assertEquals(3L * (PRODUCTS - 1), shop.getRevenueAsLong());
+
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Fills a new shop which can hold at most {@link OffHeapShopTest#MAXIMUM_NUMBER_OF_PRODUCTS} products.
+     */
+    private void fillShop() {
+
+        shop = getFactory().makeOffHeapShop(MAXIMUM_NUMBER_OF_PRODUCTS);
+
+        try {
+            for (int i = 0; i < MAXIMUM_NUMBER_OF_PRODUCTS; i++) {
+                shop.registerProduct(getFactory().makeProduct(ean13(i), "desc"));
+            }
+        }
+        catch (BarCodeAlreadyInUseException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        assertEquals(MAXIMUM_NUMBER_OF_PRODUCTS, shop.getNumberOfProducts());
+
+    }
+
+    /**
+     * Test to see that a product cannot be registered in a shop which already holds as many as it can.
+     *
+     * @throws BarCodeAlreadyInUseException not expected, as the bar code is not in use
+     */
+    @Test(expected = IllegalStateException.class)
+    public void registerInFullShop() throws BarCodeAlreadyInUseException {
+
+        fillShop();
+        shop.registerProduct(getFactory().makeProduct(ean13(MAXIMUM_NUMBER_OF_PRODUCTS), "desc"));
+
+    }
+
+    /**
+     * Test to see that a full shop can hold another product once one is unregistered.
+     */
+    @Test
+    public void registerAfterUnregisteringFromFullShop() {
+
+        fillShop();
+
+        try {
+            shop.unregisterProduct(getFactory().makeProduct(ean13(0), "desc"));
+            shop.registerProduct(getFactory().makeProduct(ean13(MAXIMUM_NUMBER_OF_PRODUCTS), "desc"));
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        assertEquals(MAXIMUM_NUMBER_OF_PRODUCTS, shop.getNumberOfProducts());
+
+    }
+
+    /**
+     * Test to see that a shop cannot be made to hold more products than a single buffer can index.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void makeShopTooLarge() {
+        getFactory().makeOffHeapShop(OffHeapShop.MAX_NUMBER_OF_PRODUCTS + 1);
+    }
+
+}
@@ -0,0 +1,286 @@
+package uk.ac.standrews.cs.cs2001.w03.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractFactoryClient;
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractShopException;
+import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
+import uk.ac.standrews.cs.cs2001.w03.common.OrderAlreadyCompleteException;
+import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
+import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
+import uk.ac.standrews.cs.cs2001.w03.impl.OrderBatch;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.ICustomer;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrder;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IOrderBatch;
+import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test class for the {@link OrderBatch} class.
+ *
+ * @author 150009974
+ * @version 1.0
+ */
+public class OrderBatchTest extends AbstractFactoryClient {
+
+    /**
+     * The {@link IShop} to which most orders in the tests are made.
+     */
+    private IShop shop;
+
+    /**
+     * The {@link ICustomer} making the orders.
+     */
+    private ICustomer customer;
+
+    /**
+     * The {@link IOrderBatch} instance used in the test methods.
+     */
+    private IOrderBatch batch;
+
+    /**
+     * Resets the {@link OrderBatchTest#shop}, {@link OrderBatchTest#customer}
+     * and {@link OrderBatchTest#batch} before each test.
+     */
+    @Before
+    public void setUp() {
+        shop = getFactory().makeShop();
+        customer = getFactory().makeCustomer();
+        batch = getFactory().makeOrderBatch();
+    }
+
+    /**
+     * Registers a product in a shop and gives it some stock.
+     *
+     * @param shop    the shop
+     * @param barCode the bar code of the product
+     * @param stock   the number of units to stock
+     */
+    private void stock(IShop shop, String barCode, int stock) {
+
+        try {
+            shop.registerProduct(getFactory().makeProduct(barCode, null));
+            shop.addStock(barCode, stock);
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Creates an order to a shop with the given quantity of a product.
+     *
+     * @param shop     the shop
+     * @param barCode  the bar code of the product
+     * @param quantity the quantity to order
+     * @return the order
+     */
+    private IOrder order(IShop shop, String barCode, int quantity) {
+
+        IOrder order = customer.createOrder(shop);
+
+        try {
+            order.addItem(barCode);
+            for (int i = 0; i < quantity; i++) {
+                order.increaseQuantityOf(barCode);
+            }
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        return order;
+
+    }
+
+    @Test
+    public void completeSuccessfully() {
+
+        IShop otherShop = getFactory().makeShop();
+        stock(shop, "1-2", 5);
+        stock(shop, "3-4", 5);
+        stock(otherShop, "1-2", 5);
+
+        IOrder order1 = order(shop, "1-2", 2);
+        IOrder order2 = order(shop, "3-4", 3);
+        IOrder order3 = order(otherShop, "1-2", 4);
+
+        batch.addOrder(order1);
+        batch.addOrder(order2);
+        batch.addOrder(order3);
+        assertEquals(3, batch.getNumberOfOrders());
+
+        assertTrue(batch.complete().isEmpty());
+        assertEquals(0, batch.getNumberOfOrders());
+
+        assertTrue(order1.isComplete());
+        assertTrue(order2.isComplete());
+        assertTrue(order3.isComplete());
+        assertEquals(3, customer.getNumberOfCompletedOrders());
+
+        assertEquals(5, shop.getTotalStockCount());
+        assertEquals(5, shop.getRevenue());
+        assertEquals(1, otherShop.getTotalStockCount());
+
+    }
+
+    /**
+     * Test to see that an order which cannot be completed is reported, while the others are completed.
+     */
+    @Test
+    public void completeWithFailures() {
+
+        stock(shop, "1-2", 5);
+        stock(shop, "3-4", 5);
+
+        IOrder done = order(shop, "1-2", 1);
+        IOrder unregistered = order(shop, "3-4", 1);
+        IOrder good = order(shop, "1-2", 2);
+
+        try {
+            done.complete();
+            shop.unregisterProduct(shop.getProduct("3-4"));
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        batch.addOrder(done);
+        batch.addOrder(unregistered);
+        batch.addOrder(good);
+
+        Map<IOrder, AbstractShopException> failures = batch.complete();
+
+        assertEquals(2, failures.size());
+        assertTrue(failures.get(done) instanceof OrderAlreadyCompleteException);
+        assertTrue(failures.get(unregistered) instanceof ProductNotRegisteredException);
+
+        assertFalse(unregistered.isComplete());
+        assertTrue(good.isComplete());
+        assertEquals(2, shop.getTotalStockCount());
+
+    }
+
+    /**
+     * Test to see that orders whose reservations have expired are still completed in the order they were added,
+     * as far as the stock goes.
+     */
+    @Test
+    public void completeAfterReservationsExpire() {
+
+        stock(shop, "1-2", 3);
+
+        //Let the reservations expire, so that the orders compete for the same stock.
+        shop.setReservationTimeout(0);
+        IOrder order1 = order(shop, "1-2", 2);
+        IOrder order2 = order(shop, "1-2", 1);
+
+        try {
+            Thread.sleep(50);
+            shop.buyProduct("1-2");
+        }
+        catch (InterruptedException | StockUnavailableException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        batch.addOrder(order1);
+        batch.addOrder(order2);
+
+        Map<IOrder, AbstractShopException> failures = batch.complete();
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(order2) instanceof StockUnavailableException);
+        assertTrue(order1.isComplete());
+        assertFalse(order2.isComplete());
+        assertEquals(0, shop.getTotalStockCount());
+
+    }
+
+    /**
+     * Test to see that an order added twice is only completed once.
+     */
+    @Test
+    public void completeOrderAddedTwice() {
+
+        stock(shop, "1-2", 5);
+        IOrder order = order(shop, "1-2", 2);
+
+        batch.addOrder(order);
+        batch.addOrder(order);
+
+        assertTrue(batch.complete().isEmpty());
+        assertEquals(3, shop.getTotalStockCount());
+        assertEquals(1, customer.getNumberOfCompletedOrders());
+
+    }
+
+    /**
+     * Wraps an order in another implementation of {@link IOrder}, which the batch can only complete on its own.
+     *
+     * @param order the order to wrap
+     * @return an order which passes every call on to the given one
+     */
+    private static IOrder wrap(IOrder order) {
+
+        return (IOrder) Proxy.newProxyInstance(IOrder.class.getClassLoader(), new Class<?>[]{IOrder.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(order, args);
+                    }
+                    catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+
+    }
+
+    /**
+     * Test to see that an order of another implementation is not completed ahead of the orders added before it.
+     */
+    @Test
+    public void completeOtherOrderInTurn() {
+
+        stock(shop, "1-2", 5);
+
+        //Let the reservations expire, so that the orders compete for the same stock.
+        shop.setReservationTimeout(0);
+        IOrder first = order(shop, "1-2", 3);
+        IOrder second = null;
+
+        try {
+            Thread.sleep(50);
+            second = wrap(order(shop, "1-2", 3));
+            Thread.sleep(50);
+        }
+        catch (InterruptedException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        batch.addOrder(first);
+        batch.addOrder(second);
+
+        Map<IOrder, AbstractShopException> failures = batch.complete();
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(second) instanceof StockUnavailableException);
+        assertTrue(first.isComplete());
+        assertFalse(second.isComplete());
+        assertEquals(2, shop.getTotalStockCount());
+
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void addOrderNull() {
+        batch.addOrder(null);
+    }
+
+}
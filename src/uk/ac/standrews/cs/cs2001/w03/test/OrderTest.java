@@ -276,6 +276,58 @@ public class OrderTest extends AbstractFactoryClient {
 
     }
 
+    @Test
+    public void addItemAfterRemoving() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, null);
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 2);
+
+            order.addItem(barCode);
+            order.increaseQuantityOf(barCode);
+            order.removeItem(barCode);
+
+            order.addItem(barCode);
+            assertEquals(1, order.getNumberOfItems());
+            assertEquals(0, order.getQuantityOf(barCode));
+            assertEquals(product, order.getItem(barCode));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    @Test
+    public void addManyItems() {
+
+        int numberOfItems = 5000;
+
+        try {
+
+            for (int i = 0; i < numberOfItems; i++) {
+                String barCode = String.valueOf(i);
+                shop.registerProduct(getFactory().makeProduct(barCode, null));
+                shop.addStock(barCode);
+                order.addItem(barCode);
+                order.increaseQuantityOf(barCode);
+            }
+
+            assertEquals(numberOfItems, order.getNumberOfItems());
+            assertEquals(numberOfItems, order.getTotalQuantity());
+            assertEquals(1, order.getQuantityOf(String.valueOf(numberOfItems - 1)));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
     @Test
     public void getItemSuccessfully() {
 
@@ -936,6 +988,48 @@ public class OrderTest extends AbstractFactoryClient {
 
     }
 
+    @Test
+    public void totalsAfterReAddingAtNewPrice() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, null);
+        IProduct product2 = getFactory().makeProduct(barCode2, null);
+
+        try {
+
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.addStock(barCode1, 5);
+            shop.addStock(barCode2, 5);
+            shop.setPriceOf(barCode1, 3);
+            shop.setPriceOf(barCode2, 10);
+
+            order.addItem(barCode1);
+            order.addItem(barCode2);
+            order.increaseQuantityOf(barCode1);
+            order.increaseQuantityOf(barCode1);
+            order.increaseQuantityOf(barCode2);
+            assertEquals(3, order.getTotalQuantity());
+            assertEquals(16, order.getTotalOrderCost());
+
+            order.removeItem(barCode1);
+            shop.setPriceOf(barCode1, 4);
+            order.addItem(barCode1);
+            order.increaseQuantityOf(barCode1);
+            assertEquals(2, order.getTotalQuantity());
+            assertEquals(14, order.getTotalOrderCost());
+
+            order.decreaseQuantityOf(barCode2);
+            assertEquals(1, order.getTotalQuantity());
+            assertEquals(4, order.getTotalOrderCost());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
     @Test
     public void completeSuccessfully() {
 
@@ -974,6 +1068,46 @@ public class OrderTest extends AbstractFactoryClient {
 
     }
 
+    @Test
+    public void completeMultipleUnitsPerLine() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, null);
+        IProduct product2 = getFactory().makeProduct(barCode2, null);
+        int quantity = 100;
+
+        try {
+
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.setPriceOf(barCode1, 2);
+            shop.setPriceOf(barCode2, 5);
+            shop.addStock(barCode1, quantity);
+            shop.addStock(barCode2, quantity + 1);
+
+            order.addItem(barCode1);
+            order.addItem(barCode2);
+            for (int i = 0; i < quantity; i++) {
+                order.increaseQuantityOf(barCode1);
+                order.increaseQuantityOf(barCode2);
+            }
+
+            order.complete();
+
+            assertTrue(order.isComplete());
+            assertEquals(0, shop.getStockCount(barCode1));
+            assertEquals(1, shop.getStockCount(barCode2));
+            assertEquals(quantity, shop.getNumberOfSales(barCode1));
+            assertEquals(quantity, shop.getNumberOfSales(barCode2));
+            assertEquals(quantity * 2 + quantity * 5, shop.getRevenue());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | OrderAlreadyCompleteException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
     @Test(expected = ProductNotRegisteredException.class)
     public void completeProductRemoved() throws ProductNotRegisteredException {
 
@@ -1016,9 +1150,12 @@ public class OrderTest extends AbstractFactoryClient {
             shop.registerProduct(product);
             shop.addStock(barCode);
 
+            //Let the reservation of the order expire, so that its stock can be bought from under it.
+            shop.setReservationTimeout(0);
             order.addItem(barCode);
             order.increaseQuantityOf(barCode);
 
+            waitForReservationsToExpire();
             shop.buyProduct(barCode);
 
         }
@@ -1074,4 +1211,275 @@ public class OrderTest extends AbstractFactoryClient {
         order = getFactory().makeCustomer().createOrder(null);
     }
 
+
+    @Test
+    public void getTotalOrderCostAboveIntRange() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, null);
+
+        try {
+
+            shop.registerProduct(product);
+            shop.setPriceOf(barCode, Integer.MAX_VALUE);
+            shop.addStock(barCode, 2);
+
+            order.addItem(barCode);
+            order.increaseQuantityOf(barCode);
+            order.increaseQuantityOf(barCode);
+
+            assertEquals(2L * Integer.MAX_VALUE, order.getCostOfAsLong(barCode));
+            assertEquals(2L * Integer.MAX_VALUE, order.getTotalOrderCostAsLong());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            order.getTotalOrderCost();
+            fail("ArithmeticException was expected!");
+        }
+        catch (ArithmeticException e) {
+            assertEquals(2L * Integer.MAX_VALUE, order.getTotalOrderCostAsLong());
+        }
+
+    }
+
+
+    @Test
+    public void completeLeavesShopUnchangedOnFailure() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, null);
+        IProduct product2 = getFactory().makeProduct(barCode2, null);
+
+        try {
+
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.addStock(barCode1, 2);
+            shop.addStock(barCode2, 2);
+
+            //Let the reservation of the order expire, so that its stock can be bought from under it.
+            shop.setReservationTimeout(0);
+            order.addItem(barCode1);
+            order.addItem(barCode2);
+            order.increaseQuantityOf(barCode1);
+            order.increaseQuantityOf(barCode2);
+            order.increaseQuantityOf(barCode2);
+
+            waitForReservationsToExpire();
+            shop.buyProduct(barCode2);
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            order.complete();
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            assertFalse(order.isComplete());
+            assertEquals(3, shop.getTotalStockCount());
+            assertEquals(1, shop.getRevenue());
+        }
+        catch (ProductNotRegisteredException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Waits long enough for reservations made with a timeout of 0 to expire.
+     */
+    private static void waitForReservationsToExpire() {
+
+        try {
+            Thread.sleep(50);
+        }
+        catch (InterruptedException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+
+    /**
+     * Test to see that the quantity of an item is held for the order, so another order cannot take it.
+     */
+    @Test
+    public void increaseQuantityReservesStock() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, null);
+        IOrder other = getFactory().makeCustomer().createOrder(shop);
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode);
+
+            order.addItem(barCode);
+            other.addItem(barCode);
+            order.increaseQuantityOf(barCode);
+
+            assertEquals(1, shop.getStockCount(barCode));
+            assertEquals(0, shop.getAvailableCount(barCode));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            other.increaseQuantityOf(barCode);
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            try {
+                order.complete();
+                assertEquals(0, shop.getStockCount(barCode));
+            }
+            catch (ProductNotRegisteredException | StockUnavailableException | OrderAlreadyCompleteException e1) {
+                fail(NOT_EXPECTED);
+            }
+        }
+        catch (ProductNotRegisteredException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that decreasing the quantity of an item or removing it gives its stock back to the shop.
+     */
+    @Test
+    public void decreaseAndRemoveReleaseStock() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, null);
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 3);
+
+            order.addItem(barCode);
+            order.increaseQuantityOf(barCode);
+            order.increaseQuantityOf(barCode);
+            assertEquals(1, shop.getAvailableCount(barCode));
+
+            order.decreaseQuantityOf(barCode);
+            assertEquals(2, shop.getAvailableCount(barCode));
+
+            order.removeItem(barCode);
+            assertEquals(3, shop.getAvailableCount(barCode));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that removing an item from the middle of the order leaves the items after it,
+     * and their reservations, as they were.
+     */
+    @Test
+    public void removeItemFromMiddle() {
+
+        int numberOfItems = 6;
+
+        try {
+
+            for (int i = 0; i < numberOfItems; i++) {
+                String barCode = String.valueOf(i);
+                shop.registerProduct(getFactory().makeProduct(barCode, null));
+                shop.addStock(barCode, 10);
+                shop.setPriceOf(barCode, 2);
+                order.addItem(barCode);
+                for (int j = 0; j <= i; j++) {
+                    order.increaseQuantityOf(barCode);
+                }
+            }
+
+            order.removeItem("2");
+
+            assertEquals(numberOfItems - 1, order.getNumberOfItems());
+            assertEquals(1 + 2 + 4 + 5 + 6, order.getTotalQuantity());
+            assertEquals(2 * (1 + 2 + 4 + 5 + 6), order.getTotalOrderCost());
+            assertEquals(4, order.getQuantityOf("3"));
+            assertEquals(12, order.getCostOf("5"));
+            assertEquals(10, shop.getAvailableCount("2"));
+            assertEquals(6, shop.getAvailableCount("3"));
+
+            order.complete();
+            assertEquals(6, shop.getStockCount("3"));
+            assertEquals(4, shop.getStockCount("5"));
+            assertEquals(10, shop.getStockCount("2"));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that removing most of the items, and adding items again afterwards,
+     * leaves the remaining items and their reservations as they were.
+     */
+    @Test
+    public void removeMostItems() {
+
+        int numberOfItems = 8;
+
+        try {
+
+            for (int i = 0; i < numberOfItems; i++) {
+                String barCode = String.valueOf(i);
+                shop.registerProduct(getFactory().makeProduct(barCode, null));
+                shop.addStock(barCode, 10);
+                order.addItem(barCode);
+                for (int j = 0; j <= i; j++) {
+                    order.increaseQuantityOf(barCode);
+                }
+            }
+
+            for (int i = 0; i < numberOfItems; i++) {
+                if (i % 3 != 1) {
+                    order.removeItem(String.valueOf(i));
+                }
+            }
+
+            assertEquals(3, order.getNumberOfItems());
+            assertEquals(2 + 5 + 8, order.getTotalQuantity());
+            assertEquals(5, order.getQuantityOf("4"));
+
+            order.addItem("0");
+            order.increaseQuantityOf("0");
+            order.removeItem("1");
+
+            assertEquals(3, order.getNumberOfItems());
+            assertEquals(5 + 8 + 1, order.getTotalQuantity());
+            assertEquals(10, shop.getAvailableCount("1"));
+            assertEquals(9, shop.getAvailableCount("0"));
+
+            order.complete();
+            assertEquals(5, shop.getStockCount("4"));
+            assertEquals(9, shop.getStockCount("0"));
+            assertEquals(2, shop.getStockCount("7"));
+            assertEquals(10, shop.getStockCount("6"));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | OrderAlreadyCompleteException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
 }
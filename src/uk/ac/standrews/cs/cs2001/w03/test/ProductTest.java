@@ -6,7 +6,9 @@ import uk.ac.standrews.cs.cs2001.w03.impl.Product;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * This is a JUnit test class for the {@link Product} class.
@@ -70,4 +72,37 @@ public class ProductTest extends AbstractFactoryClient {
         assertEquals(product, sameProduct);
     }
 
+    /**
+     * Test to see that EAN/UPC bar codes, with valid and invalid check digits, and with leading zeros,
+     * are returned as they were given, without being turned into a new string each time, and hash as their strings do.
+     */
+    @Test
+    public void numericBarCodeTest() {
+
+        String[] barCodes = {"96385074", "036000291452", "4006381333931", "00000000", "4006381333932", "123456789012345"};
+
+        for (String barCode : barCodes) {
+            product = getFactory().makeProduct(barCode, null);
+            assertEquals(barCode, product.getBarCode());
+            assertSame(product.getBarCode(), product.getBarCode());
+            assertEquals(barCode.hashCode(), product.hashCode());
+        }
+
+    }
+
+    /**
+     * Test to see that products with EAN/UPC bar codes are equal only when the bar codes are the same,
+     * including any leading zeros.
+     */
+    @Test
+    public void numericEqualsTest() {
+
+        product = getFactory().makeProduct("036000291452", null);
+
+        assertEquals(product, getFactory().makeProduct("036000291452", null));
+        assertNotEquals(product, getFactory().makeProduct("0036000291452", null));
+        assertNotEquals(product, getFactory().makeProduct("96385074", null));
+
+    }
+
 }
@@ -3,6 +3,7 @@ package uk.ac.standrews.cs.cs2001.w03.test;
 import org.junit.Before;
 import org.junit.Test;
 import uk.ac.standrews.cs.cs2001.w03.common.AbstractFactoryClient;
+import uk.ac.standrews.cs.cs2001.w03.common.AbstractShopException;
 import uk.ac.standrews.cs.cs2001.w03.common.BarCodeAlreadyInUseException;
 import uk.ac.standrews.cs.cs2001.w03.common.ProductNotRegisteredException;
 import uk.ac.standrews.cs.cs2001.w03.common.StockUnavailableException;
@@ -11,8 +12,15 @@ import uk.ac.standrews.cs.cs2001.w03.impl.StockRecord;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IProduct;
 import uk.ac.standrews.cs.cs2001.w03.interfaces.IShop;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 
@@ -27,7 +35,7 @@ public class ShopTest extends AbstractFactoryClient {
     /**
      * The {@link IShop} instance used in the test methods.
      */
-    private IShop shop;
+    protected IShop shop;
 
     /**
      * Resets the {@link ShopTest#shop} before each test.
@@ -220,6 +228,33 @@ public class ShopTest extends AbstractFactoryClient {
         shop.unregisterProduct(null);
     }
 
+    /**
+     * Test to see that a product can be registered again after it has been unregistered
+     * and that its stock is not carried over from the previous registration.
+     */
+    @Test
+    public void registerProductAfterUnregistering() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode);
+            shop.unregisterProduct(product);
+
+            shop.registerProduct(product);
+            assertEquals(1, shop.getNumberOfProducts());
+            assertEquals(0, shop.getStockCount(barCode));
+            assertEquals(product, shop.getProduct(barCode));
+
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
     /**
      * Test to see that the amount of stock of a particular product is increased by one when
      * the {@link Shop#addStock(String)} method is called with its barcode.
@@ -361,6 +396,83 @@ public class ShopTest extends AbstractFactoryClient {
         }
     }
 
+    /**
+     * Test to see that {@link Shop#addStock(String, int)} and {@link Shop#buyProduct(String, int)}
+     * move the whole count at once and update the revenue and number of sales accordingly.
+     */
+    @Test
+    public void addStockAndBuyProductBulk() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.setPriceOf(barCode, 3);
+
+            shop.addStock(barCode, 10000);
+            assertEquals(10000, shop.getStockCount(barCode));
+
+            shop.buyProduct(barCode, 400);
+            assertEquals(9600, shop.getStockCount(barCode));
+            assertEquals(400, shop.getNumberOfSales(barCode));
+            assertEquals(1200, shop.getRevenue());
+
+        }
+        catch (StockUnavailableException | ProductNotRegisteredException | BarCodeAlreadyInUseException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that nothing is bought when more units are requested than there are in stock.
+     */
+    @Test
+    public void buyProductBulkNotEnoughStock() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+            shop.registerProduct(product);
+            shop.addStock(barCode, 5);
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            shop.buyProduct(barCode, 6);
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            try {
+                assertEquals(5, shop.getStockCount(barCode));
+                assertEquals(0, shop.getNumberOfSales(barCode));
+                assertEquals(0, shop.getRevenue());
+            }
+            catch (ProductNotRegisteredException e1) {
+                fail(NOT_EXPECTED);
+            }
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that the appropriate exception is thrown when bulk stock is added for a non-registered product.
+     *
+     * @throws ProductNotRegisteredException when the attempt is made
+     */
+    @Test(expected = ProductNotRegisteredException.class)
+    public void addStockBulkNotRegistered() throws ProductNotRegisteredException {
+        shop.addStock("1-2", 10);
+    }
+
     /**
      * Test to see that the number of products is always correctly returned
      * before and after products are registered and unregistered.
@@ -458,6 +570,40 @@ public class ShopTest extends AbstractFactoryClient {
 
     }
 
+    /**
+     * Test to see that the total stock count follows bulk changes and drops
+     * the stock of a product when it is unregistered.
+     */
+    @Test
+    public void getTotalStockCountAfterUnregistering() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, "des");
+        IProduct product2 = getFactory().makeProduct(barCode2, "des");
+
+        try {
+
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+
+            shop.addStock(barCode1, 30);
+            shop.addStock(barCode2, 12);
+            shop.buyProduct(barCode2, 2);
+            assertEquals(40, shop.getTotalStockCount());
+
+            shop.unregisterProduct(product1);
+            assertEquals(10, shop.getTotalStockCount());
+
+            shop.registerProduct(product1);
+            assertEquals(10, shop.getTotalStockCount());
+
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
     /**
      * Test to see that the stock count for a particular product is always correctly returned
      * before and after stock is added and bought.
@@ -638,6 +784,55 @@ public class ShopTest extends AbstractFactoryClient {
         shop.getMostPopular();
     }
 
+    /**
+     * Test to see that {@link Shop#getTopSelling(int)} returns the best selling products in order
+     * and follows sales and unregistrations.
+     */
+    @Test
+    public void getTopSellingTest() {
+
+        String barCode1 = "1-2", barCode2 = "3-4", barCode3 = "5-6";
+        IProduct product1 = getFactory().makeProduct(barCode1, "p1");
+        IProduct product2 = getFactory().makeProduct(barCode2, "p2");
+        IProduct product3 = getFactory().makeProduct(barCode3, "p3");
+
+        try {
+
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.registerProduct(product3);
+            assertEquals(3, shop.getTopSelling(3).size());
+
+            shop.addStock(barCode1, 10);
+            shop.addStock(barCode2, 10);
+            shop.addStock(barCode3, 10);
+
+            shop.buyProduct(barCode2, 3);
+            shop.buyProduct(barCode3, 5);
+            shop.buyProduct(barCode1, 1);
+            assertEquals(Arrays.asList(product3, product2), shop.getTopSelling(2));
+            assertEquals(Arrays.asList(product3, product2, product1), shop.getTopSelling(10));
+            assertEquals(0, shop.getTopSelling(0).size());
+
+            shop.unregisterProduct(product3);
+            assertEquals(product2, shop.getMostPopular());
+            assertEquals(Arrays.asList(product2, product1), shop.getTopSelling(3));
+
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that {@link Shop#getTopSelling(int)} rejects a negative count.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void getTopSellingNegative() {
+        shop.getTopSelling(-1);
+    }
+
     @Test
     public void getProductSuccessfully() {
 
@@ -787,4 +982,724 @@ public class ShopTest extends AbstractFactoryClient {
         }
     }
 
+
+    /**
+     * Test to see that the revenue of each product and the total number of sales
+     * are correctly returned after products are bought.
+     */
+    @Test
+    public void getRevenueOfAndTotalNumberOfSalesTest() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, "desc");
+        IProduct product2 = getFactory().makeProduct(barCode2, "desc");
+
+        try {
+
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.setPriceOf(barCode1, 2);
+            shop.setPriceOf(barCode2, 7);
+            shop.addStock(barCode1, 10);
+            shop.addStock(barCode2, 10);
+
+            assertEquals(0, shop.getTotalNumberOfSales());
+            assertEquals(0, shop.getRevenueOf(barCode1));
+
+            shop.buyProduct(barCode1, 4);
+            shop.buyProduct(barCode2);
+            shop.setPriceOf(barCode2, 1);
+            shop.buyProduct(barCode2);
+
+            assertEquals(8, shop.getRevenueOf(barCode1));
+            assertEquals(8, shop.getRevenueOf(barCode2));
+            assertEquals(6, shop.getTotalNumberOfSales());
+            assertEquals(16, shop.getRevenue());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    @Test(expected = ProductNotRegisteredException.class)
+    public void getRevenueOfNotRegistered() throws ProductNotRegisteredException {
+        shop.getRevenueOf("1-2");
+    }
+
+
+    /**
+     * Test to see that revenue beyond {@link Integer#MAX_VALUE} is kept exactly
+     * and that {@link Shop#getRevenue()} refuses to return it as an int.
+     */
+    @Test
+    public void getRevenueAboveIntRange() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+            shop.registerProduct(product);
+            shop.setPriceOf(barCode, Integer.MAX_VALUE);
+            shop.addStock(barCode, 3);
+            shop.buyProduct(barCode, 3);
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        assertEquals(3L * Integer.MAX_VALUE, shop.getRevenueAsLong());
+
+        try {
+            shop.getRevenue();
+            fail("ArithmeticException was expected!");
+        }
+        catch (ArithmeticException e) {
+            assertEquals(3L * Integer.MAX_VALUE, shop.getRevenueAsLong());
+        }
+
+    }
+
+    /**
+     * Test to see that a total stock count beyond {@link Integer#MAX_VALUE} is kept exactly
+     * and is not returned as an int.
+     */
+    @Test
+    public void totalStockCountBeyondInt() {
+
+        try {
+            for (String barCode : new String[]{"1-2", "3-4", "5-6"}) {
+                shop.registerProduct(getFactory().makeProduct(barCode, "desc"));
+                shop.addStock(barCode, Integer.MAX_VALUE);
+            }
+            shop.buyProduct("1-2", 1);
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        assertEquals(3L * Integer.MAX_VALUE - 1, shop.getTotalStockCountAsLong());
+
+        try {
+            shop.getTotalStockCount();
+            fail("ArithmeticException was expected!");
+        }
+        catch (ArithmeticException e) {
+            assertEquals(3L * Integer.MAX_VALUE - 1, shop.getTotalStockCountAsLong());
+        }
+
+    }
+
+
+    /**
+     * Test to see that the find methods return the same values as the corresponding get methods
+     * for a registered product.
+     */
+    @Test
+    public void findMethodsRegistered() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.setPriceOf(barCode, 4);
+            shop.addStock(barCode, 5);
+            shop.buyProduct(barCode, 2);
+
+            assertEquals(product, shop.findProduct(barCode));
+            assertEquals(3, shop.findStockCount(barCode));
+            assertEquals(2, shop.findNumberOfSales(barCode));
+            assertEquals(4, shop.findPriceOf(barCode));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that the find methods return {@link IShop#NOT_REGISTERED} or null,
+     * rather than throwing an exception, for missing and null bar codes.
+     */
+    @Test
+    public void findMethodsNotRegistered() {
+
+        IProduct product = getFactory().makeProduct("1-2", "desc");
+        try {
+            shop.registerProduct(product);
+            shop.unregisterProduct(product);
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        for (String barCode : new String[]{"1-2", "3-4", null}) {
+            assertNull(shop.findProduct(barCode));
+            assertEquals(IShop.NOT_REGISTERED, shop.findStockCount(barCode));
+            assertEquals(IShop.NOT_REGISTERED, shop.findNumberOfSales(barCode));
+            assertEquals(IShop.NOT_REGISTERED, shop.findPriceOf(barCode));
+        }
+
+    }
+
+
+    /**
+     * Test to see that exceptions are thrown without a stack trace
+     * when stack traces are switched off, and with one otherwise.
+     */
+    @Test
+    public void buyProductStacklessExceptions() {
+
+        boolean enabled = AbstractShopException.isStackTraceEnabled();
+
+        try {
+
+            AbstractShopException.setStackTraceEnabled(false);
+            try {
+                shop.buyProduct("1-2");
+                fail("ProductNotRegisteredException was expected!");
+            }
+            catch (ProductNotRegisteredException | StockUnavailableException e) {
+                assertEquals(0, e.getStackTrace().length);
+            }
+
+            AbstractShopException.setStackTraceEnabled(true);
+            try {
+                shop.buyProduct("1-2");
+                fail("ProductNotRegisteredException was expected!");
+            }
+            catch (ProductNotRegisteredException | StockUnavailableException e) {
+                assertTrue(e.getStackTrace().length > 0);
+            }
+
+        }
+        finally {
+            AbstractShopException.setStackTraceEnabled(enabled);
+        }
+
+    }
+
+
+    /**
+     * Test to see that {@link Shop#buyProducts(Map)} buys every line when all of them are available.
+     */
+    @Test
+    public void buyProductsSuccessfully() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, "desc");
+        IProduct product2 = getFactory().makeProduct(barCode2, "desc");
+
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(barCode1, 3);
+        quantities.put(barCode2, 5);
+
+        try {
+
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.setPriceOf(barCode2, 2);
+            shop.addStock(barCode1, 3);
+            shop.addStock(barCode2, 6);
+
+            shop.buyProducts(quantities);
+
+            assertEquals(0, shop.getStockCount(barCode1));
+            assertEquals(1, shop.getStockCount(barCode2));
+            assertEquals(3, shop.getNumberOfSales(barCode1));
+            assertEquals(5, shop.getNumberOfSales(barCode2));
+            assertEquals(1, shop.getTotalStockCount());
+            assertEquals(13, shop.getRevenue());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that {@link Shop#buyProducts(Map)} buys nothing when one of the lines is not available,
+     * even if the lines before it are.
+     */
+    @Test
+    public void buyProductsNotEnoughStock() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, "desc");
+        IProduct product2 = getFactory().makeProduct(barCode2, "desc");
+
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(barCode1, 3);
+        quantities.put(barCode2, 5);
+
+        try {
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.addStock(barCode1, 3);
+            shop.addStock(barCode2, 4);
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            shop.buyProducts(quantities);
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            try {
+                assertEquals(3, shop.getStockCount(barCode1));
+                assertEquals(4, shop.getStockCount(barCode2));
+                assertEquals(0, shop.getNumberOfSales(barCode1));
+                assertEquals(7, shop.getTotalStockCount());
+                assertEquals(0, shop.getTotalNumberOfSales());
+                assertEquals(0, shop.getRevenueOf(barCode1));
+                assertEquals(0, shop.getRevenue());
+            }
+            catch (ProductNotRegisteredException e1) {
+                fail(NOT_EXPECTED);
+            }
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that {@link Shop#buyProducts(Map)} buys nothing when one of the products is not registered.
+     */
+    @Test
+    public void buyProductsNotRegistered() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(barCode, 1);
+        quantities.put("3-4", 1);
+
+        try {
+            shop.registerProduct(product);
+            shop.addStock(barCode);
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            shop.buyProducts(quantities);
+            fail("ProductNotRegisteredException was expected!");
+        }
+        catch (ProductNotRegisteredException e) {
+            assertEquals(1, shop.getTotalStockCount());
+            assertEquals(0, shop.getRevenue());
+        }
+        catch (StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+
+    /**
+     * Test to see that reserved units stay in stock but cannot be bought without the reservation.
+     */
+    @Test
+    public void reserveSuccessfully() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 3);
+
+            assertNotEquals(IShop.NO_RESERVATION, shop.reserve(barCode, 2, IShop.NO_RESERVATION));
+
+            assertEquals(3, shop.getStockCount(barCode));
+            assertEquals(3, shop.getTotalStockCount());
+            assertEquals(1, shop.getAvailableCount(barCode));
+            assertEquals(1, shop.findAvailableCount(barCode));
+
+            shop.buyProduct(barCode);
+            assertEquals(0, shop.getAvailableCount(barCode));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            shop.buyProduct(barCode);
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            assertEquals(2, shop.findStockCount(barCode));
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that the stock count of a product with reserved units stops at {@link Integer#MAX_VALUE},
+     * counting the reserved units, and that the shop's totals follow it.
+     */
+    @Test
+    public void reserveAndAddMaximumStock() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 10);
+            shop.reserve(barCode, 4, IShop.NO_RESERVATION);
+            shop.addStock(barCode, Integer.MAX_VALUE);
+
+            assertEquals(Integer.MAX_VALUE, shop.getStockCount(barCode));
+            assertEquals(Integer.MAX_VALUE - 4, shop.getAvailableCount(barCode));
+            assertEquals(Integer.MAX_VALUE, shop.getTotalStockCount());
+
+            shop.unregisterProduct(product);
+            assertEquals(0, shop.getTotalStockCount());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that units held by one reservation cannot be reserved again.
+     */
+    @Test(expected = StockUnavailableException.class)
+    public void reserveNotEnoughStock() throws StockUnavailableException {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 3);
+            shop.reserve(barCode, 2, IShop.NO_RESERVATION);
+
+            shop.reserve(barCode, 2, IShop.NO_RESERVATION);
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    @Test(expected = ProductNotRegisteredException.class)
+    public void reserveNotRegistered() throws ProductNotRegisteredException {
+
+        try {
+            shop.reserve("1-2", 1, IShop.NO_RESERVATION);
+        }
+        catch (StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that a reservation can be grown and shrunk by replacing it, keeping the units it holds.
+     */
+    @Test
+    public void reserveReplacing() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 3);
+
+            long reservation = shop.reserve(barCode, 2, IShop.NO_RESERVATION);
+            reservation = shop.reserve(barCode, 3, reservation);
+            assertEquals(0, shop.getAvailableCount(barCode));
+
+            reservation = shop.reserve(barCode, 1, reservation);
+            assertEquals(2, shop.getAvailableCount(barCode));
+
+            assertEquals(IShop.NO_RESERVATION, shop.reserve(barCode, 0, reservation));
+            assertEquals(3, shop.getAvailableCount(barCode));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that a reservation which cannot be grown is kept as it was.
+     */
+    @Test
+    public void reserveReplacingNotEnoughStock() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+        long reservation = IShop.NO_RESERVATION;
+
+        try {
+            shop.registerProduct(product);
+            shop.addStock(barCode, 3);
+            reservation = shop.reserve(barCode, 2, IShop.NO_RESERVATION);
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            shop.reserve(barCode, 4, reservation);
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            assertEquals(1, shop.findAvailableCount(barCode));
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    @Test
+    public void releaseReservationSuccessfully() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 3);
+
+            long reservation = shop.reserve(barCode, 3, IShop.NO_RESERVATION);
+            shop.releaseReservation(reservation);
+            assertEquals(3, shop.getAvailableCount(barCode));
+
+            //Releasing twice does nothing.
+            shop.reserve(barCode, 1, IShop.NO_RESERVATION);
+            shop.releaseReservation(reservation);
+            assertEquals(2, shop.getAvailableCount(barCode));
+
+            shop.buyProduct(barCode, 2);
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that the units held by a reservation become available again once it expires.
+     */
+    @Test
+    public void reservationExpires() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 3);
+
+            shop.setReservationTimeout(0);
+            long reservation = shop.reserve(barCode, 3, IShop.NO_RESERVATION);
+
+            Thread.sleep(50);
+
+            assertEquals(3, shop.getAvailableCount(barCode));
+            shop.buyProduct(barCode, 3);
+
+            //The expired reservation is no longer held, so it cannot be used for a purchase.
+            Map<String, Integer> quantities = new LinkedHashMap<>();
+            quantities.put(barCode, 1);
+            shop.addStock(barCode);
+            shop.buyProducts(quantities, new long[]{reservation});
+            assertEquals(0, shop.getStockCount(barCode));
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException | InterruptedException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setReservationTimeoutNegative() {
+        shop.setReservationTimeout(-1);
+    }
+
+    /**
+     * Test to see that {@link Shop#buyProducts(Map, long[])} can buy the units held by its reservations,
+     * and uses them up.
+     */
+    @Test
+    public void buyProductsWithReservations() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, "desc");
+        IProduct product2 = getFactory().makeProduct(barCode2, "desc");
+
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(barCode1, 2);
+        quantities.put(barCode2, 1);
+
+        try {
+
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.addStock(barCode1, 3);
+            shop.addStock(barCode2, 2);
+
+            long reservation1 = shop.reserve(barCode1, 3, IShop.NO_RESERVATION);
+            long reservation2 = shop.reserve(barCode2, 1, IShop.NO_RESERVATION);
+
+            shop.buyProducts(quantities, new long[]{reservation1, reservation2});
+
+            assertEquals(1, shop.getStockCount(barCode1));
+            assertEquals(1, shop.getAvailableCount(barCode1));
+            assertEquals(1, shop.getStockCount(barCode2));
+            assertEquals(1, shop.getAvailableCount(barCode2));
+            assertEquals(2, shop.getTotalStockCount());
+            assertEquals(3, shop.getTotalNumberOfSales());
+            assertEquals(3, shop.getRevenue());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that a failed {@link Shop#buyProducts(Map, long[])} keeps its reservations.
+     */
+    @Test
+    public void buyProductsWithReservationsNotEnoughStock() {
+
+        String barCode1 = "1-2", barCode2 = "3-4";
+        IProduct product1 = getFactory().makeProduct(barCode1, "desc");
+        IProduct product2 = getFactory().makeProduct(barCode2, "desc");
+
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantities.put(barCode1, 2);
+        quantities.put(barCode2, 2);
+
+        long reservation1 = IShop.NO_RESERVATION, reservation2 = IShop.NO_RESERVATION;
+
+        try {
+            shop.registerProduct(product1);
+            shop.registerProduct(product2);
+            shop.addStock(barCode1, 2);
+            shop.addStock(barCode2, 2);
+            reservation1 = shop.reserve(barCode1, 2, IShop.NO_RESERVATION);
+            reservation2 = shop.reserve(barCode2, 1, IShop.NO_RESERVATION);
+            shop.reserve(barCode2, 1, IShop.NO_RESERVATION);
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+        try {
+            shop.buyProducts(quantities, new long[]{reservation1, reservation2});
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            assertEquals(0, shop.findAvailableCount(barCode1));
+            assertEquals(0, shop.findAvailableCount(barCode2));
+            assertEquals(4, shop.getTotalStockCount());
+            assertEquals(0, shop.getRevenue());
+        }
+        catch (ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    @Test
+    public void findAvailableCountNotRegistered() {
+        assertEquals(IShop.NOT_REGISTERED, shop.findAvailableCount("1-2"));
+    }
+
+    /**
+     * Test to see that unregistering a product with reserved units removes all of its stock from the total.
+     */
+    @Test
+    public void unregisterProductWithReservation() {
+
+        String barCode = "1-2";
+        IProduct product = getFactory().makeProduct(barCode, "desc");
+
+        try {
+
+            shop.registerProduct(product);
+            shop.addStock(barCode, 3);
+            long reservation = shop.reserve(barCode, 2, IShop.NO_RESERVATION);
+
+            shop.unregisterProduct(product);
+            assertEquals(0, shop.getTotalStockCount());
+
+            shop.releaseReservation(reservation);
+            shop.registerProduct(product);
+            assertEquals(0, shop.getAvailableCount(barCode));
+            assertEquals(0, shop.getTotalStockCount());
+
+        }
+        catch (ProductNotRegisteredException | BarCodeAlreadyInUseException | StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
+    /**
+     * Test to see that products with EAN/UPC bar codes which differ only in leading zeros are kept apart.
+     */
+    @Test
+    public void numericBarCodesTest() {
+
+        IProduct upc = getFactory().makeProduct("036000291452", null);
+        IProduct ean = getFactory().makeProduct("0036000291452", null);
+
+        try {
+
+            shop.registerProduct(upc);
+            shop.registerProduct(ean);
+            shop.addStock("036000291452", 2);
+            shop.addStock("0036000291452", 5);
+
+            assertEquals(2, shop.getStockCount("036000291452"));
+            assertEquals(5, shop.getStockCount("0036000291452"));
+            assertEquals(upc, shop.getProduct("036000291452"));
+
+            shop.unregisterProduct(upc);
+            assertEquals(IShop.NOT_REGISTERED, shop.findStockCount("036000291452"));
+            assertEquals(5, shop.getStockCount("0036000291452"));
+
+        }
+        catch (BarCodeAlreadyInUseException | ProductNotRegisteredException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
 }
@@ -24,14 +24,14 @@ public class StockRecordTest extends AbstractFactoryClient {
     /**
      * The {@link IStockRecord} instance used in the test methods.
      */
-    private IStockRecord stockRecord;
+    protected IStockRecord stockRecord;
 
     /**
      * The {@link IProduct} instance passed to the
      * {@link Factory#makeStockRecord(IProduct)} method, when instantiating
      * the {@link StockRecordTest#stockRecord} object.
      */
-    private static IProduct product;
+    protected static IProduct product;
 
     /**
      * Instantiates the product before the test class is run.
@@ -193,6 +193,98 @@ public class StockRecordTest extends AbstractFactoryClient {
         stockRecord.buyProduct();
     }
 
+    /**
+     * Test to see if the {@link StockRecord#addStock(int)} method adds all units at once
+     * and stops at the maximum stock count.
+     */
+    @Test
+    public void addStockBulkTest() {
+
+        stockRecord.addStock(10);
+        assertEquals(10, stockRecord.getStockCount());
+
+        stockRecord.addStock(0);
+        assertEquals(10, stockRecord.getStockCount());
+
+        stockRecord.addStock(Integer.MAX_VALUE - 5);
+        assertEquals(Integer.MAX_VALUE, stockRecord.getStockCount());
+
+    }
+
+    /**
+     * Test to see if the {@link StockRecord#addStock(int)} method rejects a negative count.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void addStockBulkNegative() {
+        stockRecord.addStock(-1);
+    }
+
+    /**
+     * Test to see if the {@link StockRecord#buyProduct(int)} method reduces the stock count
+     * and increases the number of sales by the whole count at once.
+     */
+    @Test
+    public void buyProductBulkAvailable() {
+
+        stockRecord.addStock(10);
+
+        try {
+            stockRecord.buyProduct(7);
+        }
+        catch (StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+        assertEquals(3, stockRecord.getStockCount());
+        assertEquals(7, stockRecord.getNumberOfSales());
+
+    }
+
+    /**
+     * Test to see if the {@link StockRecord#buyProduct(int)} method leaves the record unchanged
+     * when fewer units than requested are in stock.
+     */
+    @Test
+    public void buyProductBulkUnavailable() {
+
+        stockRecord.addStock(2);
+
+        try {
+            stockRecord.buyProduct(3);
+            fail("StockUnavailableException was expected!");
+        }
+        catch (StockUnavailableException e) {
+            assertEquals(2, stockRecord.getStockCount());
+            assertEquals(0, stockRecord.getNumberOfSales());
+        }
+
+    }
+
+    /**
+     * Test to see if the revenue counts every bought unit at the price it had when it was bought.
+     */
+    @Test
+    public void getRevenueTest() {
+
+        assertEquals(0, stockRecord.getRevenue());
+        stockRecord.addStock(10);
+
+        try {
+
+            stockRecord.setPrice(3);
+            stockRecord.buyProduct(2);
+            assertEquals(6, stockRecord.getRevenue());
+
+            stockRecord.setPrice(5);
+            stockRecord.buyProduct();
+            assertEquals(11, stockRecord.getRevenue());
+
+        }
+        catch (StockUnavailableException e) {
+            fail(NOT_EXPECTED);
+        }
+
+    }
+
     /**
      * Test to see if the setter and getter for the price are working correctly.
      */